@@ -8,6 +8,7 @@ import com.github.kubatatami.judonetworking.builders.BatchBuilder;
 import com.github.kubatatami.judonetworking.caches.DiskCache;
 import com.github.kubatatami.judonetworking.caches.MemoryCache;
 import com.github.kubatatami.judonetworking.clonners.Clonner;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
 import com.github.kubatatami.judonetworking.internals.EndpointBase;
 import com.github.kubatatami.judonetworking.internals.stats.MethodStat;
 
@@ -99,6 +100,86 @@ public interface Endpoint extends EndpointBase {
      */
     void setBatchTimeoutMode(BatchTimeoutMode mode);
 
+    /**
+     * Flushes auto batch window as soon as it contains given number of requests.
+     *
+     * @param maxSize Max requests in one auto batch, 0 means no limit
+     */
+    void setAutoBatchMaxSize(int maxSize);
+
+    /**
+     * Flushes auto batch window as soon as estimated size of its requests reaches given number of bytes.
+     *
+     * @param maxBytes Max estimated payload of one auto batch, 0 means no limit
+     */
+    void setAutoBatchMaxPayload(int maxBytes);
+
+    /**
+     * Splits big batches into parts sent in parallel. Requests are assigned to parts by their
+     * measured time (see time profiler), so one slow method doesn't hold back the fast ones.
+     *
+     * @param parts     Number of parts, 1 or less disables splitting
+     * @param minSize   Split only batches with more requests than this
+     * @param minWeight Split only batches with estimated time (ms) above this, 0 means no limit
+     */
+    void setBatchSplit(int parts, int minSize, long minWeight);
+
+    /**
+     * Limits number of requests sent at once by one batch when protocol doesn't support batches.
+     *
+     * @param limit Max parallel requests of one batch, 0 means no limit
+     */
+    void setBatchFanOutLimit(int limit);
+
+    /**
+     * Runs async requests as a chain of callbacks instead of a blocked thread per request.
+     * Works only with transports which support async calls (OkHttpTransportLayer), batches and
+     * virtual servers still use the executor.
+     *
+     * @param enabled If true async execution is enabled
+     */
+    void setAsyncExecution(boolean enabled);
+
+    /**
+     * Retry policy of async methods without {@link com.github.kubatatami.judonetworking.annotations.Retry} annotation.
+     *
+     * @param max     Max number of retries, 0 disables default retry
+     * @param backoff Delay in ms before the first retry, doubled before every next one
+     * @param jitter  Random part of the delay, 0.2 means +/-20%
+     * @param on      JudoException subclasses which cause retry, ConnectionException if empty
+     */
+    void setDefaultRetry(int max, int backoff, float jitter, Class<?>... on);
+
+    /**
+     * Limits retries of all requests. Every retry takes one token, every successful request gives back tokenRatio.
+     *
+     * @param maxTokens  Max retries in a row when every request fails
+     * @param tokenRatio Part of token given back by successful request
+     */
+    void setRetryBudget(int maxTokens, float tokenRatio);
+
+    /**
+     * Enables circuit breaker per method and host. Open circuit fails requests with CircuitOpenException,
+     * which is a ConnectionException, so LocalCache with OnlyOnError mode serves cached data.
+     * State changes are reported by OnCircuitStateChangeListener.
+     *
+     * @param failureRate Part of failed requests (0-1) which opens the circuit, 0 disables circuit breaker
+     * @param minRequests Min number of requests measured before the circuit can open
+     * @param openTime    Time in ms after which open circuit lets one probe request through
+     */
+    void setCircuitBreaker(float failureRate, int minRequests, int openTime);
+
+    /**
+     * Derives timeout of methods without RequestMethod.timeout from their latency measured by time profiler.
+     * Until a method has enough samples the default method timeout (limited by floor and ceiling) is used.
+     *
+     * @param percentile Latency percentile (0-100), 0 disables adaptive timeouts
+     * @param multiplier Multiplier of the percentile latency
+     * @param floor      Min timeout in ms
+     * @param ceiling    Max timeout in ms
+     */
+    void setAdaptiveTimeout(float percentile, float multiplier, int floor, int ceiling);
+
     /**
      * Enables response cache.
      *
@@ -177,6 +258,10 @@ public interface Endpoint extends EndpointBase {
 
     void setDefaultMethodCacheOnlyOnErrorMode(LocalCache.OnlyOnError onlyOnError);
 
+    LocalCache.ServerCacheControl getDefaultMethodServerCacheControl();
+
+    void setDefaultMethodServerCacheControl(LocalCache.ServerCacheControl serverCacheControl);
+
     Map<String, MethodStat> getTimeProfilerStats();
 
     void registerAdapter(JudoAdapter adapter);
@@ -188,7 +273,11 @@ public interface Endpoint extends EndpointBase {
      * Time: 21:21
      */
     enum BatchTimeoutMode {
-        TIMEOUTS_SUM, LONGEST_TIMEOUT
+        TIMEOUTS_SUM, LONGEST_TIMEOUT,
+        /**
+         * Longest timeout of batch requests plus expected time (measured by time profiler) of all of them.
+         */
+        DEADLINE
     }
 
     /**
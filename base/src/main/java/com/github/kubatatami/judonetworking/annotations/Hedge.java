@@ -0,0 +1,34 @@
+package com.github.kubatatami.judonetworking.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sends a second identical request when the first one takes longer than the given percentile of
+ * the method latency measured by time profiler. The first response wins, the other call is cancelled.
+ * Use only on idempotent methods. Works with async methods and transports which support async calls.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Hedge {
+
+    boolean enabled() default true;
+
+    /**
+     * Latency percentile (0-100) after which the hedged request is sent.
+     */
+    float percentile() default 95;
+
+    /**
+     * Number of measured requests required to use the percentile.
+     */
+    int minSamples() default 20;
+
+    /**
+     * Hedge delay in ms used until enough samples are collected, 0 means no hedging before that.
+     */
+    int delay() default 0;
+
+}
@@ -26,6 +26,29 @@ public @interface LocalCache {
 
     OnlyOnError onlyOnError() default OnlyOnError.DEFAULT;
 
+    /**
+     * Time in ms after lifeTime during which expired data is returned immediately
+     * (marked as stale in CacheInfo) and refreshed in background.
+     */
+    int staleWhileRevalidate() default 0;
+
+    /**
+     * If true callback is invoked second time with data from background refresh.
+     */
+    boolean refreshCallback() default false;
+
+    /**
+     * If true expired data with ETag or Last-Modified header is revalidated by conditional request
+     * and reused without downloading when server responds with 304.
+     */
+    boolean revalidate() default true;
+
+    /**
+     * HONOR takes lifetime of cached data from Cache-Control (max-age, s-maxage, no-cache, no-store)
+     * and Expires response headers, lifeTime is used if the response has none of them.
+     */
+    ServerCacheControl serverCacheControl() default ServerCacheControl.DEFAULT;
+
 
     int DEFAULT = -1;
 
@@ -38,4 +61,8 @@ public @interface LocalCache {
     enum OnlyOnError {
         DEFAULT, NO, ON_CONNECTION_ERROR, ON_ALL_ERROR
     }
+
+    enum ServerCacheControl {
+        DEFAULT, IGNORE, HONOR
+    }
 }
@@ -0,0 +1,40 @@
+package com.github.kubatatami.judonetworking.annotations;
+
+import com.github.kubatatami.judonetworking.exceptions.ConnectionException;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Retries failed async request with exponential backoff. Retries are limited by endpoint retry budget.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Retry {
+
+    boolean enabled() default true;
+
+    /**
+     * Max number of retries after the first attempt.
+     */
+    int max() default 3;
+
+    /**
+     * Delay in ms before the first retry, doubled before every next one.
+     */
+    int backoff() default 500;
+
+    /**
+     * Random part of the delay, 0.2 means +/-20%.
+     */
+    float jitter() default 0.2f;
+
+    /**
+     * Exceptions (with subclasses) which cause retry.
+     */
+    Class<? extends JudoException>[] on() default {ConnectionException.class};
+
+}
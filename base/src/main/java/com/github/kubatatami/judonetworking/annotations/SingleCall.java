@@ -21,6 +21,11 @@ public @interface SingleCall {
      * Created by Kuba on 08/05/14.
      */
     enum SingleMode {
-        CANCEL_OLD, CANCEL_NEW
+        CANCEL_OLD, CANCEL_NEW,
+        /**
+         * Calls with equal arguments made while the first one is in progress share its result.
+         * The result object itself is shared too, unless endpoint works in {@link com.github.kubatatami.judonetworking.Endpoint.CacheMode#CLONE} mode.
+         */
+        COALESCE
     }
 }
\ No newline at end of file
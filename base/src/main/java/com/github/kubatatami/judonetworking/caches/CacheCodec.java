@@ -0,0 +1,21 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Encodes cached objects stored by disk cache.
+ */
+public interface CacheCodec {
+
+    /**
+     * @return Id stored with every entry, entries written by codec with other id are not decoded
+     */
+    byte getId();
+
+    void encode(Object object, Type type, OutputStream stream) throws IOException;
+
+    Object decode(InputStream stream, Type type) throws IOException;
+}
@@ -0,0 +1,334 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import android.content.Context;
+
+import com.github.kubatatami.judonetworking.Endpoint;
+import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+import com.github.kubatatami.judonetworking.logs.JudoLogger;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory cache with lock-free reads. Entries are keyed by method id and arguments compared by deep equality.
+ * Each method has its own region, a region lock is taken on put to keep its eviction queue. Full region evicts
+ * its least recently used entry by second chance: entries read since queued are moved to the tail instead.
+ * <p>
+ * Optionally all methods share a budget in bytes. Entries are weighed on put and when the budget is exceeded
+ * entries are evicted across all methods by segmented LRU: entries never read since put go first,
+ * then entries which were hit, least recently used first.
+ */
+public class ConcurrentMemoryCache implements KeyedMemoryCache {
+
+    private static final Comparator<Candidate> ACCESS_ORDER = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate lhs, Candidate rhs) {
+            return lhs.lastAccess < rhs.lastAccess ? -1 : (lhs.lastAccess == rhs.lastAccess ? 0 : 1);
+        }
+    };
+
+    private static final float PROTECTED_RATIO = 0.8f;
+
+    private int debugFlags;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final ConcurrentHashMap<Integer, Region> regions = new ConcurrentHashMap<>();
+
+    private final Object evictionLock = new Object();
+
+    private final long maxWeight;
+
+    private final Weigher weigher;
+
+    protected Context context;
+
+    public ConcurrentMemoryCache(Context context) {
+        this(context, 0, null);
+    }
+
+    /**
+     * @param maxWeight Budget in bytes shared by all methods, 0 means no limit
+     * @param weigher   Estimates size of cached objects, SerializedWeigher if null
+     */
+    public ConcurrentMemoryCache(Context context, long maxWeight, Weigher weigher) {
+        this.context = context;
+        this.maxWeight = maxWeight;
+        this.weigher = maxWeight > 0 && weigher == null ? new SerializedWeigher() : weigher;
+    }
+
+    @Override
+    public CacheResult get(int methodId, Object[] params, int cacheLifeTime, int cacheSize) {
+        return get(new MethodKey(methodId, params), cacheLifeTime, cacheSize);
+    }
+
+    @Override
+    public CacheResult get(MethodKey key, int cacheLifeTime, int cacheSize) {
+        CacheResult result = new CacheResult();
+        Region region = regions.get(key.getMethodId());
+        if (region != null) {
+            if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Search for " + key.getMethodId() + " with hash:" + key.hashCode(), JudoLogger.LogLevel.DEBUG);
+            }
+            Entry entry = region.entries.get(key);
+            if (entry != null) {
+                if (cacheLifeTime == 0 || System.currentTimeMillis() - entry.createTime < cacheLifeTime) {
+                    if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                        JudoLogger.log("Cache(" + key.getMethodId() + "): Get from memory cache object with hash:" + key.hashCode(), JudoLogger.LogLevel.DEBUG);
+                    }
+                    entry.lastAccess = clock.incrementAndGet();
+                    entry.hit = true;
+                    result.object = entry.getObject();
+                    result.time = entry.createTime;
+                    result.headers = entry.headers;
+                    result.result = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void put(int methodId, Object[] params, Object object, int cacheSize, Map<String, List<String>> headers) {
+        put(new MethodKey(methodId, params), object, cacheSize, headers);
+    }
+
+    @Override
+    public void put(MethodKey key, Object object, int cacheSize, Map<String, List<String>> headers) {
+        Region region = regions.get(key.getMethodId());
+        if (region == null) {
+            Region newRegion = new Region();
+            region = regions.putIfAbsent(key.getMethodId(), newRegion);
+            if (region == null) {
+                region = newRegion;
+            }
+        }
+        int entryWeight = maxWeight > 0 ? weigher.weigh(key, object) : 0;
+        if (entryWeight > maxWeight && maxWeight > 0) {
+            region.remove(key);
+            if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Cache(" + key.getMethodId() + "): Object with hash:" + key.hashCode() + " exceeds memory cache budget", JudoLogger.LogLevel.DEBUG);
+            }
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), object, headers, entryWeight);
+        entry.lastAccess = clock.incrementAndGet();
+        region.put(key, entry, cacheSize != 0 ? cacheSize : Integer.MAX_VALUE);
+        if (regions.get(key.getMethodId()) != region) {
+            region.remove(key, entry);
+        }
+        if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+            JudoLogger.log("Cache(" + key.getMethodId() + "): Saved in memory cache with hash:" + key.hashCode(), JudoLogger.LogLevel.DEBUG);
+        }
+        if (maxWeight > 0 && weight.get() > maxWeight) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        synchronized (evictionLock) {
+            if (weight.get() <= maxWeight) {
+                return;
+            }
+            List<Candidate> candidates = new ArrayList<>();
+            long protectedWeight = 0;
+            for (Region region : regions.values()) {
+                for (Map.Entry<MethodKey, Entry> mapEntry : region.entries.entrySet()) {
+                    Entry entry = mapEntry.getValue();
+                    candidates.add(new Candidate(region, mapEntry.getKey(), entry));
+                    if (entry.hit) {
+                        protectedWeight += entry.weight;
+                    }
+                }
+            }
+            Collections.sort(candidates, ACCESS_ORDER);
+            long maxProtectedWeight = (long) (maxWeight * PROTECTED_RATIO);
+            for (int i = 0; i < candidates.size() && protectedWeight > maxProtectedWeight; i++) {
+                Candidate candidate = candidates.get(i);
+                if (candidate.entry.hit) {
+                    candidate.entry.hit = false;
+                    protectedWeight -= candidate.entry.weight;
+                }
+            }
+            // evict a bit more than needed so next puts don't scan again
+            long targetWeight = maxWeight - maxWeight / 20;
+            for (int segment = 0; segment < 2 && weight.get() > targetWeight; segment++) {
+                boolean hitSegment = segment == 1;
+                for (Candidate candidate : candidates) {
+                    if (weight.get() <= targetWeight) {
+                        break;
+                    }
+                    if (candidate.entry.hit == hitSegment) {
+                        candidate.region.remove(candidate.key, candidate.entry);
+                    }
+                }
+            }
+            if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Memory cache trimmed to " + weight.get() + " bytes", JudoLogger.LogLevel.DEBUG);
+            }
+        }
+    }
+
+    /**
+     * @return Estimated size of all cached objects in bytes, 0 if cache has no budget
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public void clearCache() {
+        for (Integer methodId : regions.keySet()) {
+            clearCache(methodId);
+        }
+    }
+
+    @Override
+    public void clearCache(Method method) {
+        clearCache(CacheMethod.getMethodId(method));
+    }
+
+    @Override
+    public void clearCache(Method method, Object... params) {
+        clearCache(CacheMethod.getMethodId(method), params);
+    }
+
+    @Override
+    public void clearCache(int methodId) {
+        Region region = regions.remove(methodId);
+        if (region != null) {
+            region.clear();
+        }
+    }
+
+    @Override
+    public void clearCache(int methodId, Object... params) {
+        Region region = regions.get(methodId);
+        if (region != null) {
+            region.remove(new MethodKey(methodId, params));
+        }
+    }
+
+    @Override
+    public int getDebugFlags() {
+        return debugFlags;
+    }
+
+    @Override
+    public void setDebugFlags(int debugFlags) {
+        this.debugFlags = debugFlags;
+    }
+
+    class Region {
+
+        final ConcurrentHashMap<MethodKey, Entry> entries = new ConcurrentHashMap<>();
+
+        // eviction queue in insertion order, guarded by region lock
+        private final LinkedHashMap<MethodKey, Entry> queue = new LinkedHashMap<>();
+
+        synchronized void put(MethodKey key, Entry entry, int maxSize) {
+            weight.addAndGet(entry.weight);
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                weight.addAndGet(-old.weight);
+                queue.remove(key);
+            }
+            entry.queuedAccess = entry.lastAccess;
+            queue.put(key, entry);
+            while (entries.size() > maxSize) {
+                if (!evictEldest()) {
+                    break;
+                }
+            }
+        }
+
+        synchronized void remove(MethodKey key) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                weight.addAndGet(-old.weight);
+                queue.remove(key);
+            }
+        }
+
+        synchronized void remove(MethodKey key, Entry entry) {
+            if (entries.remove(key, entry)) {
+                weight.addAndGet(-entry.weight);
+                queue.remove(key);
+            }
+        }
+
+        synchronized void clear() {
+            for (MethodKey key : entries.keySet()) {
+                remove(key);
+            }
+        }
+
+        private boolean evictEldest() {
+            while (!queue.isEmpty()) {
+                Iterator<Map.Entry<MethodKey, Entry>> iterator = queue.entrySet().iterator();
+                Map.Entry<MethodKey, Entry> head = iterator.next();
+                Entry entry = head.getValue();
+                iterator.remove();
+                if (entry.lastAccess != entry.queuedAccess) {
+                    // read since queued, second chance
+                    entry.queuedAccess = entry.lastAccess;
+                    queue.put(head.getKey(), entry);
+                } else {
+                    remove(head.getKey(), entry);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Entry extends DefaultMemoryCache.CacheObject {
+
+        final int weight;
+
+        volatile long lastAccess;
+
+        volatile boolean hit;
+
+        long queuedAccess;
+
+        Entry(long createTime, Object object, Map<String, List<String>> headers, int weight) {
+            super(createTime, object, headers);
+            this.weight = weight;
+        }
+    }
+
+    static class Candidate {
+
+        final Region region;
+
+        final MethodKey key;
+
+        final Entry entry;
+
+        final long lastAccess;
+
+        Candidate(Region region, MethodKey key, Entry entry) {
+            this.region = region;
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+}
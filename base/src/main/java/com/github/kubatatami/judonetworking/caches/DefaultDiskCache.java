@@ -4,7 +4,9 @@ import android.content.Context;
 
 import com.github.kubatatami.judonetworking.Endpoint;
 import com.github.kubatatami.judonetworking.annotations.LocalCache;
+import com.github.kubatatami.judonetworking.internals.cache.BloomFilter;
 import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
 import com.github.kubatatami.judonetworking.internals.results.CacheResult;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
 
@@ -18,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -29,12 +32,20 @@ import java.util.Map;
  * Date: 07.03.2013
  * Time: 08:05
  */
-public class DefaultDiskCache implements DiskCache {
+public class DefaultDiskCache implements KeyedDiskCache {
+
+    private static final int MIN_FILTER_ENTRIES = 256;
+
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
 
     private int debugFlags;
 
     protected Context context;
 
+    private BloomFilter cacheFilter;
+
+    private BloomFilter dataFilter;
+
     public DefaultDiskCache(Context context) {
         this.context = context;
     }
@@ -45,8 +56,28 @@ public class DefaultDiskCache implements DiskCache {
         return loadObject(method, hash, cacheLifeTime);
     }
 
+    @Override
+    public CacheResult get(CacheMethod method, MethodKey key, int cacheLifeTime) {
+        CacheResult result = loadObject(method, key.getDigest(), cacheLifeTime);
+        if (result.result && !key.getCanonicalArgs().equals(result.key)) {
+            return new CacheResult();
+        }
+        return result;
+    }
+
     @Override
     public void put(CacheMethod method, String hash, Object object, int cacheSize, Map<String, List<String>> headers) {
+        put(method, hash, new CacheResult(object, true, method.getTime(), headers), cacheSize);
+    }
+
+    @Override
+    public void put(CacheMethod method, MethodKey key, Object object, int cacheSize, Map<String, List<String>> headers) {
+        CacheResult value = new CacheResult(object, true, method.getTime(), headers);
+        value.key = key.getCanonicalArgs();
+        put(method, key.getDigest(), value, cacheSize);
+    }
+
+    private void put(CacheMethod method, String hash, CacheResult value, int cacheSize) {
         try {
             File dir = getCacheDir(method);
             File file = new File(getCacheDir(method), hash + "");
@@ -54,9 +85,10 @@ public class DefaultDiskCache implements DiskCache {
                 trimToSize(dir, cacheSize);
             }
             ObjectOutputStream os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
-            os.writeObject(new CacheResult(object, true, method.getTime(), headers));
+            os.writeObject(value);
             os.flush();
             os.close();
+            addToFilter(method, hash);
             if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
                 JudoLogger.log("Cache(" + method + "): Saved in disk cache " + file.getAbsolutePath() + ".", JudoLogger.LogLevel.DEBUG);
             }
@@ -86,6 +118,10 @@ public class DefaultDiskCache implements DiskCache {
         delete(file);
         file = getCacheDir(LocalCache.CacheLevel.DISK_DATA);
         delete(file);
+        synchronized (this) {
+            cacheFilter = null;
+            dataFilter = null;
+        }
     }
 
     @Override
@@ -96,9 +132,10 @@ public class DefaultDiskCache implements DiskCache {
 
     @Override
     public void clearCache(CacheMethod method, Object... params) {
-        Integer hash = Arrays.deepHashCode(params);
-        File file = getCacheDir(method);
-        delete(new File(file, hash.toString()));
+        File file = new File(getCacheDir(method), new MethodKey(method.getMethodId(), params).getDigest());
+        if (file.exists()) {
+            delete(file);
+        }
     }
 
 
@@ -122,8 +159,83 @@ public class DefaultDiskCache implements DiskCache {
     }
 
 
+    /**
+     * @return Expected false positive rate of negative lookup filter
+     */
+    public synchronized double getFalsePositiveRate(LocalCache.CacheLevel cacheLevel) {
+        return getFilter(cacheLevel).getFalsePositiveRate();
+    }
+
+    private synchronized boolean mightContain(CacheMethod method, String hash) {
+        return getFilter(method.getCacheLevel()).mightContain(getFilterKey(method, hash));
+    }
+
+    private synchronized void addToFilter(CacheMethod method, String hash) {
+        BloomFilter filter = getFilter(method.getCacheLevel());
+        filter.put(getFilterKey(method, hash));
+        if (filter.getCount() > filter.getCapacity()) {
+            // rebuilt with a bigger size on next lookup
+            setFilter(method.getCacheLevel(), null);
+        }
+    }
+
+    private BloomFilter getFilter(LocalCache.CacheLevel cacheLevel) {
+        BloomFilter filter = cacheLevel == LocalCache.CacheLevel.DISK_CACHE ? cacheFilter : dataFilter;
+        if (filter == null) {
+            filter = buildFilter(cacheLevel);
+            setFilter(cacheLevel, filter);
+        }
+        return filter;
+    }
+
+    private void setFilter(LocalCache.CacheLevel cacheLevel, BloomFilter filter) {
+        if (cacheLevel == LocalCache.CacheLevel.DISK_CACHE) {
+            cacheFilter = filter;
+        } else {
+            dataFilter = filter;
+        }
+    }
+
+    private BloomFilter buildFilter(LocalCache.CacheLevel cacheLevel) {
+        List<String> keys = new ArrayList<>();
+        File root = getCacheDir(cacheLevel);
+        for (File interfaceDir : listFiles(root)) {
+            for (File urlDir : listFiles(interfaceDir)) {
+                for (File methodDir : listFiles(urlDir)) {
+                    String group = interfaceDir.getName() + "/" + urlDir.getName() + "/" + methodDir.getName() + "/";
+                    for (File file : listFiles(methodDir)) {
+                        keys.add(group + file.getName());
+                    }
+                }
+            }
+        }
+        BloomFilter filter = new BloomFilter(Math.max(keys.size() * 2, MIN_FILTER_ENTRIES), FILTER_FALSE_POSITIVE_RATE);
+        for (String key : keys) {
+            filter.put(key);
+        }
+        if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+            JudoLogger.log("Disk cache " + cacheLevel + " filter built from " + keys.size() + " entries.", JudoLogger.LogLevel.DEBUG);
+        }
+        return filter;
+    }
+
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private static String getFilterKey(CacheMethod method, String hash) {
+        return method.getInterfaceName() + "/" + method.getUrl().hashCode() + "/" + method.getMethodId() + "/" + hash;
+    }
+
     private CacheResult loadObject(CacheMethod method, String hash, int cacheLifeTime) {
         CacheResult result;
+        if (!mightContain(method, hash)) {
+            if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Cache(" + method + "): Not found in disk cache filter.", JudoLogger.LogLevel.DEBUG);
+            }
+            return new CacheResult();
+        }
         ObjectInputStream os = null;
         InputStream fileStream;
         File file = new File(getCacheDir(method), hash + "");
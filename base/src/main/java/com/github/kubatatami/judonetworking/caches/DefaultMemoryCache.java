@@ -5,11 +5,11 @@ import android.support.v4.util.LruCache;
 
 import com.github.kubatatami.judonetworking.Endpoint;
 import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
 import com.github.kubatatami.judonetworking.internals.results.CacheResult;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -21,12 +21,12 @@ import java.util.Map;
  * Date: 07.03.2013
  * Time: 08:05
  */
-public class DefaultMemoryCache implements MemoryCache {
+public class DefaultMemoryCache implements KeyedMemoryCache {
 
     private int debugFlags;
 
-    private Map<Integer, LruCache<Integer, CacheObject>> cache
-            = Collections.synchronizedMap(new HashMap<Integer, LruCache<Integer, CacheObject>>());
+    private Map<Integer, LruCache<MethodKey, CacheObject>> cache
+            = Collections.synchronizedMap(new HashMap<Integer, LruCache<MethodKey, CacheObject>>());
 
 
     protected Context context;
@@ -37,13 +37,19 @@ public class DefaultMemoryCache implements MemoryCache {
 
     @Override
     public CacheResult get(int methodId, Object params[], int cacheLifeTime, int cacheSize) {
+        return get(new MethodKey(methodId, params), cacheLifeTime, cacheSize);
+    }
+
+    @Override
+    public CacheResult get(MethodKey key, int cacheLifeTime, int cacheSize) {
         CacheResult result = new CacheResult();
-        Integer hash = Arrays.deepHashCode(params);
+        int methodId = key.getMethodId();
+        int hash = key.hashCode();
         if (cache.containsKey(methodId)) {
             if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
                 JudoLogger.log("Search for " + methodId + " with hash:" + hash, JudoLogger.LogLevel.DEBUG);
             }
-            CacheObject cacheObject = cache.get(methodId).get(hash);
+            CacheObject cacheObject = cache.get(methodId).get(key);
             if (cacheObject != null) {
                 if (cacheLifeTime == 0 || System.currentTimeMillis() - cacheObject.createTime < cacheLifeTime) {
                     if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
@@ -63,20 +69,25 @@ public class DefaultMemoryCache implements MemoryCache {
 
     @Override
     public void put(int methodId, Object params[], Object object, int cacheSize, Map<String, List<String>> headers) {
+        put(new MethodKey(methodId, params), object, cacheSize, headers);
+    }
+
+    @Override
+    public void put(MethodKey key, Object object, int cacheSize, Map<String, List<String>> headers) {
+        int methodId = key.getMethodId();
         if (!cache.containsKey(methodId)) {
-            cache.put(methodId, new LruCache<Integer, CacheObject>(cacheSize != 0 ? cacheSize : Integer.MAX_VALUE));
+            cache.put(methodId, new LruCache<MethodKey, CacheObject>(cacheSize != 0 ? cacheSize : Integer.MAX_VALUE));
         }
-        Integer hash = Arrays.deepHashCode(params);
-        cache.get(methodId).put(hash, new CacheObject(System.currentTimeMillis(), object, headers));
+        cache.get(methodId).put(key, new CacheObject(System.currentTimeMillis(), object, headers));
         if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
-            JudoLogger.log("Cache(" + methodId + "): Saved in memory cache with hash:" + hash, JudoLogger.LogLevel.DEBUG);
+            JudoLogger.log("Cache(" + methodId + "): Saved in memory cache with hash:" + key.hashCode(), JudoLogger.LogLevel.DEBUG);
         }
     }
 
 
     @Override
     public void clearCache() {
-        cache = Collections.synchronizedMap(new HashMap<Integer, LruCache<Integer, CacheObject>>());
+        cache = Collections.synchronizedMap(new HashMap<Integer, LruCache<MethodKey, CacheObject>>());
 
     }
 
@@ -102,10 +113,7 @@ public class DefaultMemoryCache implements MemoryCache {
     @Override
     public void clearCache(int methodId, Object... params) {
         if (cache.containsKey(methodId)) {
-            Integer paramHash = Arrays.deepHashCode(params);
-            if (cache.get(methodId).get(paramHash) != null) {
-                cache.get(methodId).remove(paramHash);
-            }
+            cache.get(methodId).remove(new MethodKey(methodId, params));
         }
     }
 
@@ -0,0 +1,682 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import android.content.Context;
+
+import com.github.kubatatami.judonetworking.Endpoint;
+import com.github.kubatatami.judonetworking.annotations.LocalCache;
+import com.github.kubatatami.judonetworking.internals.cache.CacheEntryFormat;
+import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+import com.github.kubatatami.judonetworking.internals.stats.DiskCacheStat;
+import com.github.kubatatami.judonetworking.logs.JudoLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Disk cache with in-memory LRU index of all entries. Index changes are appended to a journal
+ * which is replayed on first access, so lookups and trimming never list or stat cache directory.
+ * Entries of DISK_CACHE and DISK_DATA levels are kept in separate stores, each with its own byte budget.
+ * Entries are stored in {@link CacheEntryFormat}, objects are encoded by {@link CacheCodec}.
+ * <p>
+ * Entries left by {@link DefaultDiskCache} of earlier versions are moved to journaled store when they are read,
+ * DISK_CACHE leftovers are deleted instead.
+ */
+public class JournaledDiskCache implements KeyedDiskCache {
+
+    public static final long DEFAULT_MAX_CACHE_SIZE = 20 * 1024 * 1024;
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 4 * 1024;
+
+    private static final String DIR_NAME = "judo_cache";
+
+    private static final String LEGACY_DIR_NAME = "cache";
+
+    private static final String JOURNAL_FILE = "journal";
+
+    private static final String JOURNAL_TMP_FILE = "journal.tmp";
+
+    private static final String ENTRY_SUFFIX = ".e";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final int JOURNAL_MAGIC = 0x4a55444f;
+
+    private static final int JOURNAL_VERSION = 1;
+
+    private static final byte RECORD_PUT = 1;
+
+    private static final byte RECORD_READ = 2;
+
+    private static final byte RECORD_REMOVE = 3;
+
+    private static final int MIN_COMPACT_RECORDS = 2000;
+
+    private int debugFlags;
+
+    protected Context context;
+
+    private final Store cacheStore;
+
+    private final Store dataStore;
+
+    private final CacheCodec codec;
+
+    private final DiskCacheStat stat = new DiskCacheStat();
+
+    private volatile int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    public JournaledDiskCache(Context context) {
+        this(context, DEFAULT_MAX_CACHE_SIZE, 0);
+    }
+
+    public JournaledDiskCache(Context context, long maxCacheBytes, long maxDataBytes) {
+        this(context, maxCacheBytes, maxDataBytes, new SerializableCacheCodec());
+    }
+
+    /**
+     * @param maxCacheBytes Budget of DISK_CACHE level entries, 0 means no limit
+     * @param maxDataBytes  Budget of DISK_DATA level entries, 0 means no limit
+     * @param codec         Codec of cached objects
+     */
+    public JournaledDiskCache(Context context, long maxCacheBytes, long maxDataBytes, CacheCodec codec) {
+        this.context = context;
+        this.codec = codec;
+        this.cacheStore = new Store(LocalCache.CacheLevel.DISK_CACHE, maxCacheBytes);
+        this.dataStore = new Store(LocalCache.CacheLevel.DISK_DATA, maxDataBytes);
+    }
+
+    @Override
+    public CacheResult get(CacheMethod method, String hash, int cacheLifeTime) {
+        CacheResult result = getStore(method).get(getGroup(method), hash, cacheLifeTime, method.getResultType());
+        if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+            JudoLogger.log("Cache(" + method + "): " + (result.result ? "Get from" : "Not found in") + " disk cache.", JudoLogger.LogLevel.DEBUG);
+        }
+        return result;
+    }
+
+    @Override
+    public void put(CacheMethod method, String hash, Object object, int maxSize, Map<String, List<String>> headers) {
+        put(method, hash, new CacheResult(object, true, method.getTime(), headers), maxSize);
+    }
+
+    @Override
+    public CacheResult get(CacheMethod method, MethodKey key, int cacheLifeTime) {
+        CacheResult result = get(method, key.getDigest(), cacheLifeTime);
+        if (result.result && !key.getCanonicalArgs().equals(result.key)) {
+            if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Cache(" + method + "): Disk cache key collision.", JudoLogger.LogLevel.DEBUG);
+            }
+            return new CacheResult();
+        }
+        return result;
+    }
+
+    @Override
+    public void put(CacheMethod method, MethodKey key, Object object, int maxSize, Map<String, List<String>> headers) {
+        CacheResult value = new CacheResult(object, true, method.getTime(), headers);
+        value.key = key.getCanonicalArgs();
+        put(method, key.getDigest(), value, maxSize);
+    }
+
+    private void put(CacheMethod method, String hash, CacheResult value, int maxSize) {
+        getStore(method).put(getGroup(method), hash, value, method.getResultType(), maxSize);
+        if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+            JudoLogger.log("Cache(" + method + "): Saved in disk cache.", JudoLogger.LogLevel.DEBUG);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        cacheStore.clear();
+        dataStore.clear();
+    }
+
+    @Override
+    public void clearCache(CacheMethod method) {
+        getStore(method).removeGroup(getGroup(method));
+    }
+
+    @Override
+    public void clearCache(CacheMethod method, Object... params) {
+        getStore(method).remove(getGroup(method), new MethodKey(method.getMethodId(), params).getDigest());
+    }
+
+    @Override
+    public int getDebugFlags() {
+        return debugFlags;
+    }
+
+    @Override
+    public void setDebugFlags(int debugFlags) {
+        this.debugFlags = debugFlags;
+    }
+
+    /**
+     * Entries with encoded size at least threshold are deflated.
+     *
+     * @param compressionThreshold Threshold in bytes, 0 disables compression
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @return Snapshot of entry counters, times in microseconds
+     */
+    public DiskCacheStat getStat() {
+        DiskCacheStat result = new DiskCacheStat();
+        synchronized (stat) {
+            stat.copyTo(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return Size of cached entries in bytes
+     */
+    public long getSize(LocalCache.CacheLevel cacheLevel) {
+        return (cacheLevel == LocalCache.CacheLevel.DISK_CACHE ? cacheStore : dataStore).getSize();
+    }
+
+    private Store getStore(CacheMethod method) {
+        return method.getCacheLevel() == LocalCache.CacheLevel.DISK_CACHE ? cacheStore : dataStore;
+    }
+
+    private static String getGroup(CacheMethod method) {
+        return method.getInterfaceName() + "/" + method.getUrl().hashCode() + "/" + method.getMethodId();
+    }
+
+    static class Entry {
+
+        final String group;
+
+        final String hash;
+
+        final long fileId;
+
+        final long size;
+
+        final long time;
+
+        Entry(String group, String hash, long fileId, long size, long time) {
+            this.group = group;
+            this.hash = hash;
+            this.fileId = fileId;
+            this.size = size;
+            this.time = time;
+        }
+
+        String getKey() {
+            return group + "/" + hash;
+        }
+    }
+
+    class Store {
+
+        private final LocalCache.CacheLevel cacheLevel;
+
+        private final long maxBytes;
+
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final Map<String, LinkedHashMap<String, Entry>> groups = new HashMap<>();
+
+        private File dir;
+
+        private DataOutputStream journal;
+
+        private int journalRecords;
+
+        private long size;
+
+        private long nextFileId;
+
+        // entries of DefaultDiskCache not migrated yet, key to file
+        private Map<String, File> legacyEntries;
+
+        Store(LocalCache.CacheLevel cacheLevel, long maxBytes) {
+            this.cacheLevel = cacheLevel;
+            this.maxBytes = maxBytes;
+        }
+
+        CacheResult get(String group, String hash, int cacheLifeTime, Type type) {
+            Entry entry;
+            synchronized (this) {
+                init();
+                String key = group + "/" + hash;
+                entry = entries.get(key);
+                if (entry == null) {
+                    File legacyFile = legacyEntries != null ? legacyEntries.remove(key) : null;
+                    return legacyFile != null ? migrate(group, hash, legacyFile, cacheLifeTime, type) : new CacheResult();
+                }
+                if (cacheLifeTime != 0 && System.currentTimeMillis() - entry.time >= cacheLifeTime) {
+                    return new CacheResult();
+                }
+                groups.get(group).get(key);
+                appendRecord(RECORD_READ, entry);
+            }
+            InputStream is = null;
+            try {
+                is = new BufferedInputStream(new FileInputStream(getEntryFile(entry.fileId)));
+                return CacheEntryFormat.read(is, type, codec, stat);
+            } catch (Exception e) {
+                JudoLogger.log(e);
+                synchronized (this) {
+                    if (entries.get(entry.getKey()) == entry) {
+                        removeEntry(entry);
+                    }
+                }
+                return new CacheResult();
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        void put(String group, String hash, CacheResult value, Type type, int maxCount) {
+            long fileId;
+            synchronized (this) {
+                init();
+                fileId = nextFileId++;
+            }
+            File tmpFile = new File(dir, fileId + TMP_SUFFIX);
+            try {
+                OutputStream os = new BufferedOutputStream(new FileOutputStream(tmpFile));
+                try {
+                    CacheEntryFormat.write(os, value, type, codec, compressionThreshold, stat);
+                } finally {
+                    os.close();
+                }
+            } catch (IOException e) {
+                JudoLogger.log(e);
+                tmpFile.delete();
+                return;
+            }
+            synchronized (this) {
+                File file = getEntryFile(fileId);
+                if (!tmpFile.renameTo(file)) {
+                    tmpFile.delete();
+                    return;
+                }
+                Entry entry = new Entry(group, hash, fileId, file.length(), System.currentTimeMillis());
+                String key = entry.getKey();
+                Entry old = entries.get(key);
+                if (old != null) {
+                    removeEntry(old);
+                }
+                LinkedHashMap<String, Entry> groupEntries = addEntry(entry);
+                appendRecord(RECORD_PUT, entry);
+                while (maxCount > 0 && groupEntries.size() > maxCount) {
+                    removeEntry(groupEntries.values().iterator().next());
+                }
+                while (maxBytes > 0 && size > maxBytes && !entries.isEmpty()) {
+                    removeEntry(entries.values().iterator().next());
+                }
+            }
+        }
+
+        synchronized void remove(String group, String hash) {
+            init();
+            Entry entry = entries.get(group + "/" + hash);
+            if (entry != null) {
+                removeEntry(entry);
+            }
+            if (legacyEntries != null) {
+                File legacyFile = legacyEntries.remove(group + "/" + hash);
+                if (legacyFile != null) {
+                    legacyFile.delete();
+                }
+            }
+        }
+
+        synchronized void removeGroup(String group) {
+            init();
+            if (legacyEntries != null) {
+                for (Iterator<Map.Entry<String, File>> iterator = legacyEntries.entrySet().iterator(); iterator.hasNext(); ) {
+                    Map.Entry<String, File> legacyEntry = iterator.next();
+                    if (legacyEntry.getKey().startsWith(group + "/")) {
+                        legacyEntry.getValue().delete();
+                        iterator.remove();
+                    }
+                }
+            }
+            LinkedHashMap<String, Entry> groupEntries = groups.get(group);
+            if (groupEntries != null) {
+                for (Entry entry : new ArrayList<>(groupEntries.values())) {
+                    removeEntry(entry);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            init();
+            for (Entry entry : entries.values()) {
+                getEntryFile(entry.fileId).delete();
+            }
+            entries.clear();
+            groups.clear();
+            size = 0;
+            rewriteJournal();
+            legacyEntries = null;
+            deleteTree(getLegacyDir());
+        }
+
+        synchronized long getSize() {
+            init();
+            return size;
+        }
+
+        private LinkedHashMap<String, Entry> addEntry(Entry entry) {
+            String key = entry.getKey();
+            entries.put(key, entry);
+            LinkedHashMap<String, Entry> groupEntries = groups.get(entry.group);
+            if (groupEntries == null) {
+                groupEntries = new LinkedHashMap<>(16, 0.75f, true);
+                groups.put(entry.group, groupEntries);
+            }
+            groupEntries.put(key, entry);
+            size += entry.size;
+            return groupEntries;
+        }
+
+        private void removeEntry(Entry entry) {
+            dropEntry(entry);
+            getEntryFile(entry.fileId).delete();
+            appendRecord(RECORD_REMOVE, entry);
+        }
+
+        private void dropEntry(Entry entry) {
+            String key = entry.getKey();
+            entries.remove(key);
+            LinkedHashMap<String, Entry> groupEntries = groups.get(entry.group);
+            if (groupEntries != null) {
+                groupEntries.remove(key);
+                if (groupEntries.isEmpty()) {
+                    groups.remove(entry.group);
+                }
+            }
+            size -= entry.size;
+        }
+
+        private File getEntryFile(long fileId) {
+            return new File(dir, fileId + ENTRY_SUFFIX);
+        }
+
+        private void init() {
+            if (dir != null) {
+                return;
+            }
+            File root = cacheLevel == LocalCache.CacheLevel.DISK_CACHE ? context.getCacheDir() : context.getFilesDir();
+            dir = new File(root, DIR_NAME);
+            dir.mkdirs();
+            File journalFile = new File(dir, JOURNAL_FILE);
+            if (journalFile.exists()) {
+                readJournal(journalFile);
+            }
+            deleteUnknownFiles();
+            rewriteJournal();
+            if (cacheLevel == LocalCache.CacheLevel.DISK_CACHE) {
+                deleteTree(getLegacyDir());
+            } else {
+                findLegacyEntries();
+            }
+            if ((debugFlags & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Disk cache " + cacheLevel + " loaded " + entries.size() + " entries, " + size + " bytes.", JudoLogger.LogLevel.DEBUG);
+            }
+        }
+
+        private File getLegacyDir() {
+            File root = cacheLevel == LocalCache.CacheLevel.DISK_CACHE ? context.getCacheDir() : context.getFilesDir();
+            return new File(root, LEGACY_DIR_NAME);
+        }
+
+        /**
+         * DefaultDiskCache stored entries as interface/urlHash/methodId/canonicalArgs files.
+         */
+        private void findLegacyEntries() {
+            File legacyDir = getLegacyDir();
+            if (!legacyDir.isDirectory()) {
+                return;
+            }
+            legacyEntries = new HashMap<>();
+            for (File interfaceDir : listFiles(legacyDir)) {
+                for (File urlDir : listFiles(interfaceDir)) {
+                    for (File methodDir : listFiles(urlDir)) {
+                        int methodId;
+                        try {
+                            methodId = Integer.parseInt(methodDir.getName());
+                        } catch (NumberFormatException e) {
+                            continue;
+                        }
+                        String group = interfaceDir.getName() + "/" + urlDir.getName() + "/" + methodDir.getName();
+                        for (File file : listFiles(methodDir)) {
+                            legacyEntries.put(group + "/" + MethodKey.getDigest(methodId, file.getName()), file);
+                        }
+                    }
+                }
+            }
+            if (legacyEntries.isEmpty()) {
+                legacyEntries = null;
+                deleteTree(legacyDir);
+            }
+        }
+
+        private CacheResult migrate(String group, String hash, File legacyFile, int cacheLifeTime, Type type) {
+            CacheResult result = null;
+            ObjectInputStream is = null;
+            try {
+                is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile)));
+                result = (CacheResult) is.readObject();
+                result.key = legacyFile.getName();
+                put(group, hash, result, type, 0);
+            } catch (Exception e) {
+                JudoLogger.log(e);
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                legacyFile.delete();
+            }
+            if (legacyEntries != null && legacyEntries.isEmpty()) {
+                legacyEntries = null;
+                deleteTree(getLegacyDir());
+            }
+            if (result == null || (cacheLifeTime != 0 && result.time != null
+                    && System.currentTimeMillis() - result.time >= cacheLifeTime)) {
+                return new CacheResult();
+            }
+            return result;
+        }
+
+        private void readJournal(File journalFile) {
+            DataInputStream is = null;
+            try {
+                is = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+                if (is.readInt() != JOURNAL_MAGIC || is.readInt() != JOURNAL_VERSION) {
+                    return;
+                }
+                while (true) {
+                    byte type = is.readByte();
+                    String group = readString(is);
+                    String hash = readString(is);
+                    String key = group + "/" + hash;
+                    if (type == RECORD_PUT) {
+                        Entry entry = new Entry(group, hash, is.readLong(), is.readLong(), is.readLong());
+                        Entry old = entries.get(key);
+                        if (old != null) {
+                            dropEntry(old);
+                        }
+                        addEntry(entry);
+                        nextFileId = Math.max(nextFileId, entry.fileId + 1);
+                    } else if (type == RECORD_READ) {
+                        Entry entry = entries.get(key);
+                        if (entry != null) {
+                            groups.get(group).get(key);
+                        }
+                    } else if (type == RECORD_REMOVE) {
+                        Entry entry = entries.get(key);
+                        if (entry != null) {
+                            dropEntry(entry);
+                        }
+                    } else {
+                        return;
+                    }
+                }
+            } catch (EOFException ignored) {
+                // journal ends here, also after an interrupted write
+            } catch (IOException e) {
+                JudoLogger.log(e);
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        private void deleteUnknownFiles() {
+            Set<String> known = new HashSet<>();
+            for (Entry entry : entries.values()) {
+                known.add(entry.fileId + ENTRY_SUFFIX);
+            }
+            known.add(JOURNAL_FILE);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!known.contains(file.getName())) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+
+        private void rewriteJournal() {
+            closeJournal();
+            File tmpFile = new File(dir, JOURNAL_TMP_FILE);
+            try {
+                DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+                try {
+                    os.writeInt(JOURNAL_MAGIC);
+                    os.writeInt(JOURNAL_VERSION);
+                    for (Entry entry : entries.values()) {
+                        writeRecord(os, RECORD_PUT, entry);
+                    }
+                } finally {
+                    os.close();
+                }
+                File journalFile = new File(dir, JOURNAL_FILE);
+                if (!tmpFile.renameTo(journalFile)) {
+                    throw new IOException("Can't rename " + tmpFile);
+                }
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+                journalRecords = entries.size();
+            } catch (IOException e) {
+                JudoLogger.log(e);
+                journal = null;
+            }
+        }
+
+        private void appendRecord(byte type, Entry entry) {
+            if (journal != null) {
+                try {
+                    writeRecord(journal, type, entry);
+                    journal.flush();
+                    journalRecords++;
+                } catch (IOException e) {
+                    JudoLogger.log(e);
+                    closeJournal();
+                    return;
+                }
+                // reads append records too, so compaction can't wait for next put
+                if (journalRecords > MIN_COMPACT_RECORDS && journalRecords > entries.size() * 2) {
+                    rewriteJournal();
+                }
+            }
+        }
+
+        private void closeJournal() {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException ignored) {
+                }
+                journal = null;
+            }
+        }
+    }
+
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private static void deleteTree(File file) {
+        if (file.isDirectory()) {
+            for (File child : listFiles(file)) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void writeRecord(DataOutputStream os, byte type, Entry entry) throws IOException {
+        os.writeByte(type);
+        writeString(os, entry.group);
+        writeString(os, entry.hash);
+        if (type == RECORD_PUT) {
+            os.writeLong(entry.fileId);
+            os.writeLong(entry.size);
+            os.writeLong(entry.time);
+        }
+    }
+
+    private static void writeString(DataOutputStream os, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static String readString(DataInputStream is) throws IOException {
+        int length = is.readInt();
+        if (length < 0 || length > 1024 * 1024) {
+            throw new EOFException("Corrupted journal");
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
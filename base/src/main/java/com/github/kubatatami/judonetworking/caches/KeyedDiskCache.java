@@ -0,0 +1,19 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk cache which stores entries under {@link MethodKey} digest.
+ * Caches implementing only {@link DiskCache} are used through the hash based methods.
+ */
+public interface KeyedDiskCache extends DiskCache {
+
+    CacheResult get(CacheMethod method, MethodKey key, int cacheLifeTime);
+
+    void put(CacheMethod method, MethodKey key, Object object, int maxSize, Map<String, List<String>> headers);
+}
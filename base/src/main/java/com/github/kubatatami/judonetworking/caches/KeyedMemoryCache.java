@@ -0,0 +1,18 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory cache which looks entries up by {@link MethodKey} without rebuilding the key from params.
+ * Caches implementing only {@link MemoryCache} are used through the params based methods.
+ */
+public interface KeyedMemoryCache extends MemoryCache {
+
+    CacheResult get(MethodKey key, int cacheLifeTime, int cacheSize);
+
+    void put(MethodKey key, Object object, int cacheSize, Map<String, List<String>> headers);
+}
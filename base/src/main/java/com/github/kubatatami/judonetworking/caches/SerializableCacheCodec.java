@@ -0,0 +1,37 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Codec based on java serialization, requires Serializable models.
+ */
+public class SerializableCacheCodec implements CacheCodec {
+
+    public static final byte ID = 1;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public void encode(Object object, Type type, OutputStream stream) throws IOException {
+        ObjectOutputStream os = new ObjectOutputStream(stream);
+        os.writeObject(object);
+        os.flush();
+    }
+
+    @Override
+    public Object decode(InputStream stream, Type type) throws IOException {
+        try {
+            return new ObjectInputStream(stream).readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
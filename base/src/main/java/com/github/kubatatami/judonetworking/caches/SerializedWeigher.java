@@ -0,0 +1,54 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Weighs values by length of their java serialized form. Values which can't be serialized get a fixed weight.
+ */
+public class SerializedWeigher implements Weigher {
+
+    private final int defaultWeight;
+
+    public SerializedWeigher() {
+        this(1024);
+    }
+
+    public SerializedWeigher(int defaultWeight) {
+        this.defaultWeight = defaultWeight;
+    }
+
+    @Override
+    public int weigh(MethodKey key, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try {
+            ObjectOutputStream os = new ObjectOutputStream(counter);
+            os.writeObject(value);
+            os.close();
+            return counter.count;
+        } catch (IOException e) {
+            return defaultWeight;
+        }
+    }
+
+    static class CountingOutputStream extends OutputStream {
+
+        int count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
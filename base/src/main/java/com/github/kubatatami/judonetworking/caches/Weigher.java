@@ -0,0 +1,14 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+
+/**
+ * Estimates memory retained by a cached object.
+ */
+public interface Weigher {
+
+    /**
+     * @return Estimated size of the value in bytes
+     */
+    int weigh(MethodKey key, Object value);
+}
@@ -0,0 +1,242 @@
+package com.github.kubatatami.judonetworking.caches;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import com.github.kubatatami.judonetworking.Endpoint;
+import com.github.kubatatami.judonetworking.internals.cache.CacheAccess;
+import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+import com.github.kubatatami.judonetworking.logs.JudoLogger;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Disk cache decorator which writes entries on a low priority disk thread.
+ * Repeated writes of the same entry are coalesced, reads check pending writes first.
+ * Pending writes are flushed when system asks application to trim memory or on demand by {@link #flush()}.
+ * Objects are serialized later on disk thread, so they must not be modified after put.
+ */
+public class WriteBehindDiskCache implements KeyedDiskCache {
+
+    private static final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "JudoNetworking Disk");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final DiskCache diskCache;
+
+    private final ConcurrentHashMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+
+    public WriteBehindDiskCache(Context context, DiskCache diskCache) {
+        this.diskCache = diskCache;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                flushAsync();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                flushAsync();
+            }
+        });
+    }
+
+    @Override
+    public CacheResult get(CacheMethod method, String hash, int cacheLifeTime) {
+        PendingWrite pendingWrite = pendingWrites.get(getKey(method, hash));
+        if (pendingWrite != null) {
+            return pendingWrite.toCacheResult();
+        }
+        return diskCache.get(method, hash, cacheLifeTime);
+    }
+
+    @Override
+    public CacheResult get(CacheMethod method, MethodKey key, int cacheLifeTime) {
+        PendingWrite pendingWrite = pendingWrites.get(getKey(method, key.getDigest()));
+        if (pendingWrite != null && pendingWrite.key != null && pendingWrite.key.getCanonicalArgs().equals(key.getCanonicalArgs())) {
+            return pendingWrite.toCacheResult();
+        }
+        return CacheAccess.get(diskCache, method, key, cacheLifeTime);
+    }
+
+    @Override
+    public void put(CacheMethod method, String hash, Object object, int maxSize, Map<String, List<String>> headers) {
+        enqueue(getKey(method, hash), new PendingWrite(method, hash, null, object, maxSize, headers));
+    }
+
+    @Override
+    public void put(CacheMethod method, MethodKey key, Object object, int maxSize, Map<String, List<String>> headers) {
+        enqueue(getKey(method, key.getDigest()), new PendingWrite(method, key.getDigest(), key, object, maxSize, headers));
+    }
+
+    private void enqueue(final String key, PendingWrite pendingWrite) {
+        if (pendingWrites.put(key, pendingWrite) == null) {
+            diskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(key);
+                }
+            });
+        }
+    }
+
+    private void write(final String key) {
+        boolean written;
+        synchronized (writeLock) {
+            PendingWrite pendingWrite = pendingWrites.get(key);
+            if (pendingWrite == null) {
+                return;
+            }
+            try {
+                pendingWrite.write(diskCache);
+            } catch (Exception e) {
+                JudoLogger.log(e);
+            }
+            written = pendingWrites.remove(key, pendingWrite);
+        }
+        if (!written) {
+            // replaced during write
+            diskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes all pending entries on current thread.
+     */
+    public void flush() {
+        for (String key : pendingWrites.keySet()) {
+            write(key);
+        }
+        if ((diskCache.getDebugFlags() & Endpoint.CACHE_DEBUG) > 0) {
+            JudoLogger.log("Disk cache flushed.", JudoLogger.LogLevel.DEBUG);
+        }
+    }
+
+    /**
+     * Writes all pending entries on disk thread.
+     */
+    public void flushAsync() {
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+    public int getPendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    @Override
+    public void clearCache() {
+        synchronized (writeLock) {
+            pendingWrites.clear();
+            diskCache.clearCache();
+        }
+    }
+
+    @Override
+    public void clearCache(CacheMethod method) {
+        synchronized (writeLock) {
+            String prefix = getKey(method, "");
+            for (Iterator<String> iterator = pendingWrites.keySet().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+            diskCache.clearCache(method);
+        }
+    }
+
+    @Override
+    public void clearCache(CacheMethod method, Object... params) {
+        synchronized (writeLock) {
+            pendingWrites.remove(getKey(method, new MethodKey(method.getMethodId(), params).getDigest()));
+            diskCache.clearCache(method, params);
+        }
+    }
+
+    @Override
+    public int getDebugFlags() {
+        return diskCache.getDebugFlags();
+    }
+
+    @Override
+    public void setDebugFlags(int debugFlags) {
+        diskCache.setDebugFlags(debugFlags);
+    }
+
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    private static String getKey(CacheMethod method, String hash) {
+        return method.getCacheLevel() + "/" + method.getInterfaceName() + "/" + method.getUrl().hashCode() + "/"
+                + method.getMethodId() + "/" + hash;
+    }
+
+    static class PendingWrite {
+
+        final CacheMethod method;
+
+        final String hash;
+
+        final MethodKey key;
+
+        final Object object;
+
+        final int maxSize;
+
+        final Map<String, List<String>> headers;
+
+        PendingWrite(CacheMethod method, String hash, MethodKey key, Object object, int maxSize, Map<String, List<String>> headers) {
+            this.method = method;
+            this.hash = hash;
+            this.key = key;
+            this.object = object;
+            this.maxSize = maxSize;
+            this.headers = headers;
+        }
+
+        void write(DiskCache diskCache) {
+            if (key != null) {
+                CacheAccess.put(diskCache, method, key, object, maxSize, headers);
+            } else {
+                diskCache.put(method, hash, object, maxSize, headers);
+            }
+        }
+
+        CacheResult toCacheResult() {
+            CacheResult result = new CacheResult(object, true, method.getTime(), headers);
+            result.key = key != null ? key.getCanonicalArgs() : null;
+            return result;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.github.kubatatami.judonetworking.controllers;
 
 import com.github.kubatatami.judonetworking.Endpoint;
 import com.github.kubatatami.judonetworking.Request;
+import com.github.kubatatami.judonetworking.caches.CacheCodec;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
 import com.github.kubatatami.judonetworking.internals.results.RequestResult;
 import com.github.kubatatami.judonetworking.internals.streams.StreamEntity;
@@ -49,6 +50,22 @@ public abstract class ProtocolController {
         return 0;
     }
 
+    public int estimateRequestSize(Request request) {
+        int size = request.getName().length();
+        if (request.getArgs() != null) {
+            for (Object arg : request.getArgs()) {
+                if (arg instanceof CharSequence) {
+                    size += ((CharSequence) arg).length();
+                } else if (arg instanceof byte[]) {
+                    size += ((byte[]) arg).length;
+                } else {
+                    size += 16;
+                }
+            }
+        }
+        return size;
+    }
+
     public abstract RequestInfo createRequest(String url, Request request) throws JudoException;
 
     public abstract RequestResult parseResponse(Request request, InputStream stream, Map<String, List<String>> headers);
@@ -77,6 +94,13 @@ public abstract class ProtocolController {
         return null;
     }
 
+    /**
+     * @return Codec of disk cache entries or null to use java serialization
+     */
+    public CacheCodec getCacheCodec() {
+        return null;
+    }
+
     public static class ApiKey implements Serializable {
 
         private static final long serialVersionUID = -630342577502897709L;
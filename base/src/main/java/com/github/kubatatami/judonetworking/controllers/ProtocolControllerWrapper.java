@@ -45,6 +45,11 @@ public class ProtocolControllerWrapper extends ProtocolController {
         return baseController.getAutoBatchTime();
     }
 
+    @Override
+    public int estimateRequestSize(Request request) {
+        return baseController.estimateRequestSize(request);
+    }
+
     @Override
     public boolean isBatchSupported() {
         return baseController.isBatchSupported();
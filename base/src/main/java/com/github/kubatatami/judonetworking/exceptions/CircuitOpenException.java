@@ -0,0 +1,13 @@
+package com.github.kubatatami.judonetworking.exceptions;
+
+/**
+ * Request was rejected without sending because the circuit breaker of its method and host is open.
+ */
+public class CircuitOpenException extends ConnectionException {
+
+    private static final long serialVersionUID = 6837340226912245816L;
+
+    public CircuitOpenException(String detailMessage) {
+        super(detailMessage);
+    }
+}
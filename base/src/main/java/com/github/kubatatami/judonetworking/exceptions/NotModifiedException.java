@@ -0,0 +1,32 @@
+package com.github.kubatatami.judonetworking.exceptions;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server responded with 304 to a conditional request.
+ */
+public class NotModifiedException extends HttpException {
+
+    private static final long serialVersionUID = -4460712933582310541L;
+
+    public static final int CODE = 304;
+
+    private final Map<String, List<String>> headers;
+
+    public NotModifiedException(String message) {
+        this(message, null);
+    }
+
+    public NotModifiedException(String message, Map<String, List<String>> headers) {
+        super(message, null, CODE);
+        this.headers = headers;
+    }
+
+    /**
+     * @return Headers of 304 response or null if transport doesn't provide them
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+}
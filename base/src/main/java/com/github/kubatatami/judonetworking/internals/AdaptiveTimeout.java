@@ -0,0 +1,37 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import com.github.kubatatami.judonetworking.internals.stats.MethodStat;
+
+/**
+ * Method timeout derived from a latency percentile measured by time profiler.
+ */
+public class AdaptiveTimeout {
+
+    private static final int MIN_SAMPLES = 20;
+
+    private final float percentile;
+
+    private final float multiplier;
+
+    private final int floor;
+
+    private final int ceiling;
+
+    public AdaptiveTimeout(float percentile, float multiplier, int floor, int ceiling) {
+        this.percentile = percentile;
+        this.multiplier = multiplier;
+        this.floor = floor;
+        this.ceiling = Math.max(ceiling, floor);
+    }
+
+    /**
+     * @return Timeout based on given method stats or defaultTimeout (limited by floor and ceiling) if there are not enough samples
+     */
+    public int getTimeout(MethodStat stat, int defaultTimeout) {
+        if (stat == null || stat.getLatencySamples() < MIN_SAMPLES) {
+            return Math.min(Math.max(defaultTimeout, floor), ceiling);
+        }
+        long timeout = (long) (stat.getLatencyPercentile(percentile) * multiplier);
+        return (int) Math.min(Math.max(timeout, floor), ceiling);
+    }
+}
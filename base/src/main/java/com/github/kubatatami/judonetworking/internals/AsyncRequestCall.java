@@ -0,0 +1,353 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import android.os.Build;
+import android.os.Process;
+
+import com.github.kubatatami.judonetworking.CacheInfo;
+import com.github.kubatatami.judonetworking.Endpoint;
+import com.github.kubatatami.judonetworking.annotations.LocalCache;
+import com.github.kubatatami.judonetworking.controllers.ProtocolController;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+import com.github.kubatatami.judonetworking.internals.results.ErrorResult;
+import com.github.kubatatami.judonetworking.internals.results.RequestResult;
+import com.github.kubatatami.judonetworking.internals.stats.TimeStat;
+import com.github.kubatatami.judonetworking.logs.JudoLogger;
+import com.github.kubatatami.judonetworking.transports.TransportLayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single request executed as a chain of short stages. Cache lookup, request creation and response
+ * reading run on a shared pool sized to CPU count, delays run on a single scheduler thread which only hands work over,
+ * network I/O is left to the transport, so no thread is held while waiting for the server. With {@link com.github.kubatatami.judonetworking.annotations.Hedge}
+ * a second attempt is sent after the hedge delay and the first response wins.
+ */
+class AsyncRequestCall {
+
+    private static ScheduledExecutorService scheduler;
+
+    private static ExecutorService ioExecutor;
+
+    private final EndpointImpl rpc;
+
+    private final RequestConnector connector;
+
+    private final TransportLayer transportLayer;
+
+    private final RequestImpl request;
+
+    private final TimeStat timeStat;
+
+    private CacheResult localCacheObject;
+
+    private ProtocolController.RequestInfo requestInfo;
+
+    private final List<Attempt> attempts = new ArrayList<>(2);
+
+    private boolean completed;
+
+    AsyncRequestCall(EndpointImpl rpc, RequestConnector connector, TransportLayer transportLayer, RequestImpl request) {
+        this.rpc = rpc;
+        this.connector = connector;
+        this.transportLayer = transportLayer;
+        this.request = request;
+        this.timeStat = new TimeStat(request);
+    }
+
+    void start() {
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                prepare();
+            }
+        });
+    }
+
+    private void prepare() {
+        if (request.isAbandoned()) {
+            return;
+        }
+        try {
+            if ((rpc.isCacheEnabled() && request.isLocalCacheable() && !request.isCacheRefresh())) {
+                localCacheObject = connector.findLocalCache(request);
+                if (localCacheObject.result && request.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
+                    if (localCacheObject.stale) {
+                        connector.scheduleCacheRefresh(request);
+                    }
+                    request.invokeStart(new CacheInfo(true, localCacheObject.time, localCacheObject.stale));
+                    request.setHeaders(localCacheObject.headers);
+                    timeStat.tickCacheTime();
+                    request.invokeCallback(localCacheObject.object);
+                    return;
+                }
+            }
+            connector.prepareRevalidation(request, localCacheObject);
+            connector.findAndCreateBase64(request);
+            request.invokeStart(new CacheInfo(false, 0L));
+        } catch (JudoException e) {
+            fail(e);
+            return;
+        }
+        try {
+            rpc.getCircuitBreakers().check(request);
+            requestInfo = connector.createRequestInfo(request);
+            timeStat.tickCreateTime();
+            connector.checkBeforeSend(request);
+        } catch (JudoException e) {
+            finish(new ErrorResult(request.getId(), e));
+            return;
+        }
+        int delay = rpc.getDelay() + request.getDelay();
+        if (delay > 0) {
+            schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send();
+                }
+            }, delay);
+        } else {
+            send();
+        }
+    }
+
+    private void send() {
+        if (request.isAbandoned()) {
+            return;
+        }
+        if (sendAttempt(requestInfo, timeStat)) {
+            long hedgeDelay = connector.getHedgeDelay(request);
+            if (hedgeDelay > 0) {
+                schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        hedge();
+                    }
+                }, hedgeDelay);
+            }
+        }
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            if (completed || request.isAbandoned() || attempts.size() != 1) {
+                return;
+            }
+        }
+        if ((rpc.getDebugFlags() & Endpoint.REQUEST_LINE_DEBUG) > 0) {
+            JudoLogger.log("Hedged request " + request.getName() + " sent.", JudoLogger.LogLevel.DEBUG);
+        }
+        try {
+            rpc.getCircuitBreakers().check(request);
+            sendAttempt(connector.createRequestInfo(request), new TimeStat(request));
+        } catch (JudoException e) {
+            JudoLogger.log(e);
+        }
+    }
+
+    private boolean sendAttempt(ProtocolController.RequestInfo requestInfo, TimeStat timeStat) {
+        Attempt attempt = new Attempt(timeStat);
+        synchronized (this) {
+            attempts.add(attempt);
+        }
+        try {
+            attempt.call = transportLayer.sendAsync(request.getName(), rpc.getProtocolController(), requestInfo,
+                    request.getTimeout(), timeStat, rpc.getDebugFlags(), request.getMethod(), attempt);
+            request.setAsyncCall(new TransportLayer.AsyncCall() {
+                @Override
+                public void cancel() {
+                    cancelAttempts(null);
+                }
+            });
+            if (request.isAbandoned()) {
+                cancelAttempts(null);
+            }
+            return true;
+        } catch (JudoException e) {
+            attempt.onError(e);
+            return false;
+        }
+    }
+
+    private void cancelAttempts(Attempt winner) {
+        List<Attempt> toCancel = new ArrayList<>();
+        synchronized (this) {
+            for (Attempt attempt : attempts) {
+                if (attempt != winner && attempt.call != null) {
+                    toCancel.add(attempt);
+                }
+            }
+        }
+        if (!toCancel.isEmpty()) {
+            final List<Attempt> attemptsToCancel = toCancel;
+            // transport cancel may touch sockets, keep it off the caller thread
+            getIoExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Attempt attempt : attemptsToCancel) {
+                        attempt.call.cancel();
+                    }
+                }
+            });
+        }
+    }
+
+    private void onConnection(Attempt attempt, final TransportLayer.Connection connection) {
+        synchronized (this) {
+            if (completed) {
+                connection.close();
+                return;
+            }
+            completed = true;
+        }
+        cancelAttempts(attempt);
+        final TimeStat timeStat = attempt.timeStat;
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request.isAbandoned()) {
+                    connection.close();
+                    return;
+                }
+                RequestResult result;
+                try {
+                    result = connector.readResponse(request, connection, timeStat);
+                } catch (JudoException e) {
+                    result = new ErrorResult(request.getId(), e);
+                } catch (Exception e) {
+                    result = new ErrorResult(request.getId(), new JudoException(e));
+                } finally {
+                    connection.close();
+                }
+                finish(result, timeStat);
+            }
+        });
+    }
+
+    private void onError(Attempt attempt, final JudoException e) {
+        synchronized (this) {
+            attempt.failed = true;
+            if (completed) {
+                return;
+            }
+            for (Attempt other : attempts) {
+                if (!other.failed) {
+                    return;
+                }
+            }
+            completed = true;
+        }
+        if (request.isAbandoned()) {
+            return;
+        }
+        final TimeStat timeStat = attempt.timeStat;
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                finish(new ErrorResult(request.getId(), e), timeStat);
+            }
+        });
+    }
+
+    private class Attempt implements TransportLayer.ConnectionListener {
+
+        final TimeStat timeStat;
+
+        TransportLayer.AsyncCall call;
+
+        boolean failed;
+
+        Attempt(TimeStat timeStat) {
+            this.timeStat = timeStat;
+        }
+
+        @Override
+        public void onConnection(TransportLayer.Connection connection) {
+            AsyncRequestCall.this.onConnection(this, connection);
+        }
+
+        @Override
+        public void onError(JudoException e) {
+            AsyncRequestCall.this.onError(this, e);
+        }
+    }
+
+    private void finish(RequestResult result) {
+        finish(result, timeStat);
+    }
+
+    private void finish(RequestResult result, TimeStat timeStat) {
+        try {
+            request.invokeCallback(connector.handleResult(request, result, localCacheObject, timeStat));
+        } catch (JudoException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(JudoException e) {
+        connector.refreshErrorStat(request);
+        if (!connector.scheduleRetry(request, e)) {
+            request.handleException(e);
+        }
+    }
+
+    /**
+     * Runs task on I/O pool after delay, scheduler thread itself never blocks.
+     */
+    static void schedule(final Runnable runnable, long delay) {
+        getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                getIoExecutor().execute(runnable);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "JudoNetworking Timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    static synchronized ExecutorService getIoExecutor() {
+        if (ioExecutor == null) {
+            int poolSize = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "JudoNetworking Async");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+                executor.allowCoreThreadTimeOut(true);
+            }
+            ioExecutor = executor;
+        }
+        return ioExecutor;
+    }
+}
@@ -8,6 +8,7 @@ import com.github.kubatatami.judonetworking.callbacks.AsyncResultCallback;
 import com.github.kubatatami.judonetworking.callbacks.CacheInfoCallback;
 import com.github.kubatatami.judonetworking.callbacks.Callback;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.internals.requests.CacheRefreshCallback;
 import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
 
@@ -252,11 +253,12 @@ public class AsyncResultSender implements Runnable {
                 doneRequest();
                 break;
             case ERROR:
-                Method handleMethod = findHandleMethod(callback.getClass(), e.getClass());
+                Object handler = callback instanceof CacheRefreshCallback ? ((CacheRefreshCallback<?>) callback).getCallback() : callback;
+                Method handleMethod = findHandleMethod(handler.getClass(), e.getClass());
                 logError(request.getName(), e);
                 if (handleMethod != null) {
                     try {
-                        handleMethod.invoke(callback, e);
+                        handleMethod.invoke(handler, e);
                     } catch (Exception invokeException) {
                         throw new RuntimeException(invokeException);
                     }
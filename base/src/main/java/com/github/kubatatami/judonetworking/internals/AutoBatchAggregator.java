@@ -0,0 +1,131 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import com.github.kubatatami.judonetworking.Endpoint;
+import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
+import com.github.kubatatami.judonetworking.logs.JudoLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects requests of all auto batch services of an endpoint into one batch window.
+ * The window is flushed by a shared timer after the protocol auto batch time or immediately
+ * when the max batch size or max payload is reached, so no thread sleeps while it is open.
+ */
+public class AutoBatchAggregator {
+
+    private static ScheduledExecutorService scheduler;
+
+    private final EndpointImpl rpc;
+
+    private List<RequestImpl> pending = new ArrayList<>();
+
+    private int pendingBytes;
+
+    private ScheduledFuture<?> flushFuture;
+
+    private int maxBatchSize = 0;
+
+    private int maxPayloadBytes = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public AutoBatchAggregator(EndpointImpl rpc) {
+        this.rpc = rpc;
+    }
+
+    public void add(RequestImpl request) {
+        boolean flushNow;
+        synchronized (this) {
+            pending.add(request);
+            pendingBytes += rpc.getProtocolController().estimateRequestSize(request);
+            flushNow = (maxBatchSize > 0 && pending.size() >= maxBatchSize)
+                    || (maxPayloadBytes > 0 && pendingBytes >= maxPayloadBytes);
+            if (!flushNow && flushFuture == null) {
+                flushFuture = getScheduler().schedule(flushRunnable,
+                        rpc.getProtocolController().getAutoBatchTime(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        List<RequestImpl> batch;
+        synchronized (this) {
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            pendingBytes = 0;
+        }
+        if ((rpc.getDebugFlags() & Endpoint.REQUEST_LINE_DEBUG) > 0) {
+            JudoLogger.log("Flush auto batch with " + batch.size() + " requests.", JudoLogger.LogLevel.DEBUG);
+        }
+        if (batch.size() == 1) {
+            RequestImpl request = batch.get(0);
+            if (rpc.isAsyncExecution(request)) {
+                rpc.getRequestConnector().callAsync(request);
+            } else {
+                Future<?> future = rpc.getExecutorService().submit(request);
+                request.setFuture(future);
+            }
+        } else {
+            final RequestProxy proxy = new RequestProxy(rpc, EndpointImpl.BatchMode.AUTO, null);
+            proxy.batchRequests.addAll(batch);
+            rpc.getExecutorService().execute(new Runnable() {
+                @Override
+                public void run() {
+                    proxy.callBatch();
+                }
+            });
+        }
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxPayloadBytes(int maxPayloadBytes) {
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    public int getMaxPayloadBytes() {
+        return maxPayloadBytes;
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "JudoNetworking AutoBatch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+}
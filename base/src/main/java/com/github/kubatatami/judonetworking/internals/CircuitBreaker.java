@@ -0,0 +1,98 @@
+package com.github.kubatatami.judonetworking.internals;
+
+/**
+ * Failure rate based circuit breaker of one method and host.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        /**
+         * Requests are sent normally.
+         */
+        CLOSED,
+        /**
+         * Requests fail fast with CircuitOpenException.
+         */
+        OPEN,
+        /**
+         * One probe request is sent, its result closes or opens the circuit again.
+         */
+        HALF_OPEN
+    }
+
+    private static final int WINDOW_SIZE = 100;
+
+    private State state = State.CLOSED;
+
+    private int successes;
+
+    private int failures;
+
+    private long stateTime;
+
+    private boolean probeInFlight;
+
+    synchronized boolean allowRequest(long openTime) {
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case OPEN:
+                if (now - stateTime < openTime) {
+                    return false;
+                }
+                setState(State.HALF_OPEN, now);
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight && now - stateTime < openTime) {
+                    return false;
+                }
+                stateTime = now;
+                probeInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            setState(State.CLOSED, System.currentTimeMillis());
+        } else if (state == State.CLOSED) {
+            successes++;
+            trimWindow();
+        }
+    }
+
+    synchronized void onFailure(float failureRate, int minRequests) {
+        if (state == State.HALF_OPEN) {
+            setState(State.OPEN, System.currentTimeMillis());
+        } else if (state == State.CLOSED) {
+            failures++;
+            int total = successes + failures;
+            if (total >= minRequests && failures >= total * failureRate) {
+                setState(State.OPEN, System.currentTimeMillis());
+            } else {
+                trimWindow();
+            }
+        }
+    }
+
+    private void trimWindow() {
+        if (successes + failures >= WINDOW_SIZE) {
+            successes /= 2;
+            failures /= 2;
+        }
+    }
+
+    private void setState(State state, long now) {
+        this.state = state;
+        this.stateTime = now;
+        this.successes = 0;
+        this.failures = 0;
+        this.probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import com.github.kubatatami.judonetworking.exceptions.CancelException;
+import com.github.kubatatami.judonetworking.exceptions.CircuitOpenException;
+import com.github.kubatatami.judonetworking.exceptions.ConnectionException;
+import com.github.kubatatami.judonetworking.exceptions.HttpException;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Circuit breakers of an endpoint keyed by method name and host. Connection errors and 5xx
+ * responses count as failures.
+ */
+public class CircuitBreakers {
+
+    private final EndpointImpl rpc;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private float failureRate = 0;
+
+    private int minRequests;
+
+    private int openTime;
+
+    public CircuitBreakers(EndpointImpl rpc) {
+        this.rpc = rpc;
+    }
+
+    public void setLimits(float failureRate, int minRequests, int openTime) {
+        this.failureRate = failureRate;
+        this.minRequests = minRequests;
+        this.openTime = openTime;
+        breakers.clear();
+    }
+
+    public boolean isEnabled() {
+        return failureRate > 0;
+    }
+
+    public void check(RequestImpl request) throws CircuitOpenException {
+        if (!isEnabled()) {
+            return;
+        }
+        CircuitBreaker breaker = getBreaker(request);
+        CircuitBreaker.State state = breaker.getState();
+        if (!breaker.allowRequest(openTime)) {
+            throw new CircuitOpenException("Circuit of " + request.getName() + " is open.");
+        }
+        notifyStateChange(request, state, breaker.getState());
+    }
+
+    public void onResult(RequestImpl request, JudoException error) {
+        if (!isEnabled() || error instanceof CircuitOpenException || error instanceof CancelException || request.isCancelled()) {
+            return;
+        }
+        CircuitBreaker breaker = getBreaker(request);
+        CircuitBreaker.State state = breaker.getState();
+        if (isFailure(error)) {
+            breaker.onFailure(failureRate, minRequests);
+        } else {
+            breaker.onSuccess();
+        }
+        notifyStateChange(request, state, breaker.getState());
+    }
+
+    private boolean isFailure(JudoException error) {
+        if (error instanceof HttpException) {
+            return ((HttpException) error).getCode() >= 500;
+        }
+        return error instanceof ConnectionException;
+    }
+
+    private CircuitBreaker getBreaker(RequestImpl request) {
+        String key = request.getName() + "@" + getHost(request);
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker == null) {
+            synchronized (breakers) {
+                breaker = breakers.get(key);
+                if (breaker == null) {
+                    breaker = new CircuitBreaker();
+                    breakers.put(key, breaker);
+                }
+            }
+        }
+        return breaker;
+    }
+
+    private String getHost(RequestImpl request) {
+        String url = request.getCustomUrl() == null ? rpc.getUrl() : request.getCustomUrl();
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private void notifyStateChange(final RequestImpl request, CircuitBreaker.State oldState, final CircuitBreaker.State newState) {
+        if (oldState != newState) {
+            rpc.circuitStateChanged(request, getHost(request), newState);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.github.kubatatami.judonetworking.internals;
 
 import com.github.kubatatami.judonetworking.Request;
 import com.github.kubatatami.judonetworking.controllers.ProtocolController;
+import com.github.kubatatami.judonetworking.internals.executors.JudoExecutor;
+import com.github.kubatatami.judonetworking.internals.stats.ExecutorStat;
 import com.github.kubatatami.judonetworking.logs.ErrorLogger;
 
 /**
@@ -40,6 +42,8 @@ public interface EndpointBase {
 
     void setOnRequestEventListener(OnRequestEventListener listener);
 
+    void setOnCircuitStateChangeListener(OnCircuitStateChangeListener listener);
+
 
     void setPercentLoss(float percentLoss);
 
@@ -47,6 +51,17 @@ public interface EndpointBase {
 
     void setThreadPriority(int threadPriority);
 
+    /**
+     * Limits number of requests executed at once. Waiting requests are queued by priority and weight.
+     *
+     * @param maxConcurrency Max requests executed at once
+     * @param maxQueueSize   Max waiting requests, 0 means no limit
+     * @param policy         What to do with requests over the queue limit
+     */
+    void setMaxConcurrentRequests(int maxConcurrency, int maxQueueSize, JudoExecutor.QueuePolicy policy);
+
+    ExecutorStat getExecutorStat();
+
 
     ProtocolController getProtocolController();
 
@@ -125,4 +140,10 @@ public interface EndpointBase {
         void onStop(Request request, int requestsCount);
 
     }
+
+    interface OnCircuitStateChangeListener {
+
+        void onCircuitStateChange(Request request, String host, CircuitBreaker.State state);
+
+    }
 }
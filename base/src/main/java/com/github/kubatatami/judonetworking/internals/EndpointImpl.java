@@ -10,21 +10,25 @@ import com.github.kubatatami.judonetworking.EndpointClassic;
 import com.github.kubatatami.judonetworking.Request;
 import com.github.kubatatami.judonetworking.adapters.JudoAdapter;
 import com.github.kubatatami.judonetworking.adapters.JudoCallbackAdapter;
-import com.github.kubatatami.judonetworking.annotations.IgnoreNullParam;
 import com.github.kubatatami.judonetworking.annotations.LocalCache;
 import com.github.kubatatami.judonetworking.batches.Batch;
 import com.github.kubatatami.judonetworking.builders.BatchBuilder;
-import com.github.kubatatami.judonetworking.caches.DefaultDiskCache;
-import com.github.kubatatami.judonetworking.caches.DefaultMemoryCache;
+import com.github.kubatatami.judonetworking.caches.ConcurrentMemoryCache;
 import com.github.kubatatami.judonetworking.caches.DiskCache;
+import com.github.kubatatami.judonetworking.caches.JournaledDiskCache;
 import com.github.kubatatami.judonetworking.caches.MemoryCache;
+import com.github.kubatatami.judonetworking.caches.SerializableCacheCodec;
+import com.github.kubatatami.judonetworking.caches.WriteBehindDiskCache;
 import com.github.kubatatami.judonetworking.callbacks.Callback;
 import com.github.kubatatami.judonetworking.clonners.Clonner;
 import com.github.kubatatami.judonetworking.clonners.DefaultClonner;
 import com.github.kubatatami.judonetworking.controllers.ProtocolController;
 import com.github.kubatatami.judonetworking.exceptions.CancelException;
+import com.github.kubatatami.judonetworking.exceptions.ConnectionException;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
 import com.github.kubatatami.judonetworking.internals.executors.JudoExecutor;
+import com.github.kubatatami.judonetworking.internals.stats.ExecutorStat;
 import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
 import com.github.kubatatami.judonetworking.internals.requests.RequestOptions;
 import com.github.kubatatami.judonetworking.internals.stats.MethodStat;
@@ -32,7 +36,6 @@ import com.github.kubatatami.judonetworking.internals.virtuals.VirtualServerInfo
 import com.github.kubatatami.judonetworking.logs.ErrorLogger;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
 import com.github.kubatatami.judonetworking.transports.TransportLayer;
-import com.github.kubatatami.judonetworking.utils.ReflectionCache;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -40,7 +43,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
@@ -51,6 +54,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 public class EndpointImpl implements Endpoint, EndpointClassic {
@@ -69,13 +73,31 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
 
     private BatchTimeoutMode timeoutMode = BatchTimeoutMode.TIMEOUTS_SUM;
 
+    private int batchSplitParts = 1;
+
+    private int batchSplitMinSize = 0;
+
+    private long batchSplitMinWeight = 0;
+
+    private int batchFanOutLimit = 5;
+
+    private boolean asyncExecution = false;
+
+    private RetryPolicy defaultRetryPolicy;
+
+    private final RetryBudget retryBudget = new RetryBudget(10, 0.1f);
+
+    private final CircuitBreakers circuitBreakers = new CircuitBreakers(this);
+
+    private AdaptiveTimeout adaptiveTimeout;
+
     private MemoryCache memoryCache;
 
     private DiskCache diskCache;
 
     private int debugFlags = 0;
 
-    private Map<String, MethodStat> stats;
+    private volatile Map<String, MethodStat> stats;
 
     private File statFile;
 
@@ -99,18 +121,28 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
 
     private Map<Integer, RequestImpl> singleCallMethods = new HashMap<>();
 
+    private Map<MethodKey, RequestImpl> coalescedRequests = new HashMap<>();
+
+    private final Set<MethodKey> cacheRefreshes = Collections.newSetFromMap(new ConcurrentHashMap<MethodKey, Boolean>());
+
+    private Map<Method, InvocationPlan> invocationPlans = new ConcurrentHashMap<>();
+
     private Set<Integer> requestIds = Collections.synchronizedSet(new HashSet<Integer>());
 
     private Set<String> requestNames = Collections.synchronizedSet(new HashSet<String>());
 
     private int id = 0;
 
-    private JudoExecutor executorService = new JudoExecutor(this);
+    private volatile JudoExecutor executorService = new JudoExecutor(this);
+
+    private AutoBatchAggregator autoBatchAggregator = new AutoBatchAggregator(this);
 
     private UrlModifier urlModifier;
 
     private OnRequestEventListener onRequestEventListener;
 
+    private OnCircuitStateChangeListener onCircuitStateChangeListener;
+
     private int defaultMethodCacheLifeTime = LocalCache.INFINITE;
 
     private int defaultMethodCacheSize = LocalCache.INFINITE;
@@ -119,6 +151,8 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
 
     private LocalCache.OnlyOnError defaultMethodCacheOnlyOnErrorMode = LocalCache.OnlyOnError.NO;
 
+    private LocalCache.ServerCacheControl defaultMethodServerCacheControl = LocalCache.ServerCacheControl.IGNORE;
+
     public EndpointImpl(Context context, ProtocolController protocolController, TransportLayer transportLayer, String url) {
         init(context, protocolController, transportLayer, url);
     }
@@ -129,8 +163,10 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         this.protocolController = protocolController;
         this.url = url;
         this.statFile = new File(context.getCacheDir(), "stats");
-        this.memoryCache = new DefaultMemoryCache(context);
-        this.diskCache = new DefaultDiskCache(context);
+        this.memoryCache = new ConcurrentMemoryCache(context);
+        this.diskCache = new WriteBehindDiskCache(context, new JournaledDiskCache(context,
+                JournaledDiskCache.DEFAULT_MAX_CACHE_SIZE, 0,
+                protocolController.getCacheCodec() != null ? protocolController.getCacheCodec() : new SerializableCacheCodec()));
         registerAdapter(new JudoCallbackAdapter());
     }
 
@@ -142,6 +178,118 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         return executorService;
     }
 
+    public AutoBatchAggregator getAutoBatchAggregator() {
+        return autoBatchAggregator;
+    }
+
+    @Override
+    public void setAutoBatchMaxSize(int maxSize) {
+        autoBatchAggregator.setMaxBatchSize(maxSize);
+    }
+
+    @Override
+    public void setAutoBatchMaxPayload(int maxBytes) {
+        autoBatchAggregator.setMaxPayloadBytes(maxBytes);
+    }
+
+    @Override
+    public void setBatchSplit(int parts, int minSize, long minWeight) {
+        this.batchSplitParts = parts;
+        this.batchSplitMinSize = minSize;
+        this.batchSplitMinWeight = minWeight;
+    }
+
+    public int getBatchSplitParts() {
+        return batchSplitParts;
+    }
+
+    public int getBatchSplitMinSize() {
+        return batchSplitMinSize;
+    }
+
+    public long getBatchSplitMinWeight() {
+        return batchSplitMinWeight;
+    }
+
+    @Override
+    public void setBatchFanOutLimit(int limit) {
+        this.batchFanOutLimit = limit;
+    }
+
+    public int getBatchFanOutLimit() {
+        return batchFanOutLimit;
+    }
+
+    @Override
+    public void setAsyncExecution(boolean enabled) {
+        this.asyncExecution = enabled;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setDefaultRetry(int max, int backoff, float jitter, Class<?>... on) {
+        if (max <= 0) {
+            defaultRetryPolicy = null;
+            return;
+        }
+        Class<? extends JudoException>[] exceptionClasses = new Class[on.length > 0 ? on.length : 1];
+        if (on.length == 0) {
+            exceptionClasses[0] = ConnectionException.class;
+        }
+        for (int i = 0; i < on.length; i++) {
+            if (!JudoException.class.isAssignableFrom(on[i])) {
+                throw new IllegalArgumentException(on[i].getName() + " is not a JudoException.");
+            }
+            exceptionClasses[i] = on[i].asSubclass(JudoException.class);
+        }
+        defaultRetryPolicy = new RetryPolicy(max, backoff, jitter, exceptionClasses);
+    }
+
+    public RetryPolicy getDefaultRetryPolicy() {
+        return defaultRetryPolicy;
+    }
+
+    @Override
+    public void setRetryBudget(int maxTokens, float tokenRatio) {
+        retryBudget.setLimits(maxTokens, tokenRatio);
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    @Override
+    public void setCircuitBreaker(float failureRate, int minRequests, int openTime) {
+        circuitBreakers.setLimits(failureRate, minRequests, openTime);
+    }
+
+    public CircuitBreakers getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    @Override
+    public void setAdaptiveTimeout(float percentile, float multiplier, int floor, int ceiling) {
+        this.adaptiveTimeout = percentile > 0 ? new AdaptiveTimeout(percentile, multiplier, floor, ceiling) : null;
+    }
+
+    /**
+     * Called on the thread which invokes API method, so stats are used only if a worker already loaded them.
+     *
+     * @return Timeout of method without explicit timeout
+     */
+    public int getMethodTimeout(String name) {
+        int timeout = requestConnector.getMethodTimeout();
+        Map<String, MethodStat> loadedStats = stats;
+        if (adaptiveTimeout != null) {
+            return adaptiveTimeout.getTimeout(loadedStats != null ? loadedStats.get(name) : null, timeout);
+        }
+        return timeout;
+    }
+
+    public boolean isAsyncExecution(RequestImpl request) {
+        return (asyncExecution || request.getHedge() != null) && requestConnector.isAsyncSupported();
+    }
+
     @Override
     public <T> void registerVirtualServer(Class<T> type, T virtualServer, int delay) {
         virtualServers.put(type, new VirtualServerInfo(virtualServer, delay, delay));
@@ -194,6 +342,10 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
 
     @SuppressWarnings("unchecked")
     private <T> T getService(Class<T> obj, RequestProxy proxy) {
+        T service = GeneratedServices.newInstance(obj, proxy);
+        if (service != null) {
+            return service;
+        }
         return (T) Proxy.newProxyInstance(obj.getClassLoader(), new Class<?>[]{obj}, proxy);
     }
 
@@ -210,13 +362,17 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         RequestImpl request = new RequestImpl(
                 this, null,
                 name, requestOptions, args,
-                returnType, getRequestConnector().getMethodTimeout(),
+                returnType, getMethodTimeout(name),
                 callback, getProtocolController().getAdditionalRequestData());
         request.setCustomUrl(url);
         request.setApiKeyRequired(requestOptions.apiKeyRequired());
         filterNullArgs(request);
-        Future<?> future = executorService.submit(request);
-        request.setFuture(future);
+        if (isAsyncExecution(request)) {
+            requestConnector.callAsync(request);
+        } else {
+            Future<?> future = executorService.submit(request);
+            request.setFuture(future);
+        }
         return request;
     }
 
@@ -224,7 +380,7 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
     public <T> T sendRequest(String url, String name, Type returnType, RequestOptions requestOptions, Object... args) throws JudoException {
         RequestImpl request = new RequestImpl(this, null, name, requestOptions, args,
                 returnType,
-                getRequestConnector().getMethodTimeout(),
+                getMethodTimeout(name),
                 null, getProtocolController().getAdditionalRequestData());
         request.setCustomUrl(url);
         request.setApiKeyRequired(requestOptions.apiKeyRequired());
@@ -234,30 +390,17 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
 
 
     public void filterNullArgs(RequestImpl request) {
-        if (request.getArgs() != null) {
-            Annotation[][] paramAnnotations = ReflectionCache.getParameterAnnotations(request.getMethod());
+        InvocationPlan plan = request.getInvocationPlan();
+        if (request.getArgs() != null && plan != null) {
             List<String> paramNames = new ArrayList<>();
             List<Object> args = new ArrayList<>();
             Collections.addAll(paramNames, request.getParamNames());
             Collections.addAll(args, request.getArgs());
             for (int i = args.size() - 1; i >= 0; i--) {
-                if (args.get(i) == null) {
-                    boolean ignore = false;
-
-                    IgnoreNullParam ignoreNullParam = ReflectionCache.findAnnotation(paramAnnotations[i], IgnoreNullParam.class);
-                    if (ignoreNullParam != null) {
-                        ignore = ignoreNullParam.value();
-                    } else {
-                        ignoreNullParam = ReflectionCache.getAnnotation(request.getMethod().getDeclaringClass(), IgnoreNullParam.class);
-                        if (ignoreNullParam != null) {
-                            ignore = ignoreNullParam.value();
-                        }
-                    }
-                    if (ignore) {
-                        args.remove(i);
-                        if (paramNames.size() > i) {
-                            paramNames.remove(i);
-                        }
+                if (args.get(i) == null && plan.isIgnoreNullParam(i)) {
+                    args.remove(i);
+                    if (paramNames.size() > i) {
+                        paramNames.remove(i);
                     }
                 }
             }
@@ -266,6 +409,15 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         }
     }
 
+    public InvocationPlan getInvocationPlan(Method method) {
+        InvocationPlan plan = invocationPlans.get(method);
+        if (plan == null) {
+            plan = InvocationPlan.compile(method, adapters);
+            invocationPlans.put(method, plan);
+        }
+        return plan;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> AsyncResult callInBatch(final Class<T> obj, final Batch<T> batch) {
@@ -385,11 +537,31 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         }
     }
 
+    void circuitStateChanged(final Request request, final String host, final CircuitBreaker.State state) {
+        if ((debugFlags & REQUEST_LINE_DEBUG) > 0) {
+            JudoLogger.log("Circuit of " + request.getName() + "@" + host + " is " + state, JudoLogger.LogLevel.DEBUG);
+        }
+        final OnCircuitStateChangeListener listener = onCircuitStateChangeListener;
+        if (listener != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onCircuitStateChange(request, host, state);
+                }
+            });
+        }
+    }
+
     @Override
     public void setOnRequestEventListener(OnRequestEventListener onRequestEventListener) {
         this.onRequestEventListener = onRequestEventListener;
     }
 
+    @Override
+    public void setOnCircuitStateChangeListener(OnCircuitStateChangeListener onCircuitStateChangeListener) {
+        this.onCircuitStateChangeListener = onCircuitStateChangeListener;
+    }
+
     @Override
     public void setCacheMode(CacheMode mode) {
         this.cacheMode = mode;
@@ -541,7 +713,7 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         }
     }
 
-    CacheMode getCacheMode() {
+    public CacheMode getCacheMode() {
         return cacheMode;
     }
 
@@ -582,6 +754,14 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         return singleCallMethods;
     }
 
+    public Set<MethodKey> getCacheRefreshes() {
+        return cacheRefreshes;
+    }
+
+    public Map<MethodKey, RequestImpl> getCoalescedRequests() {
+        return coalescedRequests;
+    }
+
     public int getThreadPriority() {
         return executorService.getThreadPriority();
     }
@@ -590,6 +770,22 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         executorService.setThreadPriority(threadPriority);
     }
 
+    @Override
+    public void setMaxConcurrentRequests(int maxConcurrency, int maxQueueSize, JudoExecutor.QueuePolicy policy) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than 0.");
+        }
+        JudoExecutor oldExecutor = executorService;
+        executorService = new JudoExecutor(this, maxConcurrency, maxQueueSize, policy);
+        executorService.setThreadPriority(oldExecutor.getThreadPriority());
+        oldExecutor.shutdown();
+    }
+
+    @Override
+    public ExecutorStat getExecutorStat() {
+        return executorService.getStat();
+    }
+
     public void setUrlModifier(UrlModifier urlModifier) {
         this.urlModifier = urlModifier;
     }
@@ -647,6 +843,16 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
         this.defaultMethodCacheOnlyOnErrorMode = defaultMethodCacheOnlyOnErrorMode;
     }
 
+    @Override
+    public LocalCache.ServerCacheControl getDefaultMethodServerCacheControl() {
+        return defaultMethodServerCacheControl;
+    }
+
+    @Override
+    public void setDefaultMethodServerCacheControl(LocalCache.ServerCacheControl defaultMethodServerCacheControl) {
+        this.defaultMethodServerCacheControl = defaultMethodServerCacheControl;
+    }
+
     @Override
     public Map<String, MethodStat> getTimeProfilerStats() {
         return stats;
@@ -655,6 +861,7 @@ public class EndpointImpl implements Endpoint, EndpointClassic {
     @Override
     public void registerAdapter(JudoAdapter adapter) {
         adapters.add(adapter);
+        invocationPlans.clear();
     }
 
     public List<JudoAdapter> getAdapters() {
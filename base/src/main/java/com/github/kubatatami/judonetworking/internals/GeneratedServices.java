@@ -0,0 +1,52 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up service implementations generated by judonetworking-compiler.
+ * Interfaces without a generated class are served by {@link java.lang.reflect.Proxy}.
+ * Generated classes are found by name, so obfuscation must keep them.
+ */
+final class GeneratedServices {
+
+    static final String SUFFIX = "$$JudoService";
+
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, Boolean> missing = new ConcurrentHashMap<>();
+
+    private GeneratedServices() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T newInstance(Class<T> apiInterface, InvocationHandler handler) {
+        Constructor<?> constructor = findConstructor(apiInterface);
+        if (constructor == null) {
+            return null;
+        }
+        try {
+            return (T) constructor.newInstance(handler);
+        } catch (Exception e) {
+            throw new JudoException("Can't create generated service for " + apiInterface.getName(), e);
+        }
+    }
+
+    private static Constructor<?> findConstructor(Class<?> apiInterface) {
+        Constructor<?> constructor = constructors.get(apiInterface);
+        if (constructor == null && !missing.containsKey(apiInterface)) {
+            try {
+                Class<?> serviceClass = Class.forName(apiInterface.getName() + SUFFIX, true, apiInterface.getClassLoader());
+                constructor = serviceClass.getConstructor(InvocationHandler.class);
+                constructors.put(apiInterface, constructor);
+            } catch (Exception e) {
+                missing.put(apiInterface, Boolean.TRUE);
+            }
+        }
+        return constructor;
+    }
+}
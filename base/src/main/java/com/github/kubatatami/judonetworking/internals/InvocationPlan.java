@@ -0,0 +1,238 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import com.github.kubatatami.judonetworking.adapters.JudoAdapter;
+import com.github.kubatatami.judonetworking.annotations.ApiKeyRequired;
+import com.github.kubatatami.judonetworking.annotations.Delay;
+import com.github.kubatatami.judonetworking.annotations.Hedge;
+import com.github.kubatatami.judonetworking.annotations.IgnoreNullParam;
+import com.github.kubatatami.judonetworking.annotations.LocalCache;
+import com.github.kubatatami.judonetworking.annotations.RejectOnMonkeyTest;
+import com.github.kubatatami.judonetworking.annotations.RequestMethod;
+import com.github.kubatatami.judonetworking.annotations.Retry;
+import com.github.kubatatami.judonetworking.annotations.SingleCall;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.utils.ReflectionCache;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Everything the request pipeline needs to know about an API method, resolved once per method
+ * so the invocation hot path only reads fields instead of walking annotations.
+ */
+public final class InvocationPlan {
+
+    private final Method method;
+
+    private final RequestMethod requestMethod;
+
+    private final String name;
+
+    private final int methodId;
+
+    private final int timeout;
+
+    private final String interfaceName;
+
+    private final RequestMethod.Modifier modifier;
+
+    private final JudoAdapter adapter;
+
+    private final Type returnType;
+
+    private final Type genericReturnType;
+
+    private final Type[] genericParameterTypes;
+
+    private final Annotation[][] parameterAnnotations;
+
+    private final boolean[] ignoreNullParams;
+
+    private final LocalCache localCache;
+
+    private final SingleCall singleCall;
+
+    private final int delay;
+
+    private final Hedge hedge;
+
+    private final RetryPolicy retryPolicy;
+
+    private final boolean retryDisabled;
+
+    private final boolean apiKeyRequired;
+
+    private final boolean rejectOnMonkeyTest;
+
+    private InvocationPlan(Method method, List<JudoAdapter> adapters) {
+        this.method = method;
+        this.requestMethod = ReflectionCache.getAnnotation(method, RequestMethod.class);
+        this.name = RequestProxy.createMethodName(method, requestMethod);
+        this.methodId = requestMethod == null || requestMethod.id() == 0 ? method.hashCode() : requestMethod.id();
+        this.timeout = requestMethod != null ? requestMethod.timeout() : 0;
+        this.interfaceName = method.getDeclaringClass().getSimpleName();
+        this.modifier = requestMethod != null ? createModifier(requestMethod) : null;
+        this.returnType = method.getReturnType();
+        this.genericReturnType = method.getGenericReturnType();
+        this.genericParameterTypes = ReflectionCache.getGenericParameterTypes(method);
+        this.parameterAnnotations = ReflectionCache.getParameterAnnotations(method);
+        this.adapter = findAdapter(adapters, genericReturnType);
+        this.ignoreNullParams = findIgnoreNullParams(method, parameterAnnotations);
+
+        LocalCache localCache = ReflectionCache.getAnnotationInherited(method, LocalCache.class);
+        this.localCache = localCache != null && localCache.enabled() ? localCache : null;
+
+        SingleCall singleCall = ReflectionCache.getAnnotationInherited(method, SingleCall.class);
+        this.singleCall = singleCall != null && singleCall.enabled() ? singleCall : null;
+
+        Delay delay = ReflectionCache.getAnnotationInherited(method, Delay.class);
+        this.delay = delay != null && delay.enabled() ? delay.value() : 0;
+
+        Hedge hedge = ReflectionCache.getAnnotationInherited(method, Hedge.class);
+        this.hedge = hedge != null && hedge.enabled() ? hedge : null;
+
+        Retry retry = ReflectionCache.getAnnotationInherited(method, Retry.class);
+        this.retryPolicy = retry != null && retry.enabled() ? RetryPolicy.fromAnnotation(retry) : null;
+        this.retryDisabled = retry != null && !retry.enabled();
+
+        ApiKeyRequired apiKeyRequired = ReflectionCache.getAnnotationInherited(method, ApiKeyRequired.class);
+        this.apiKeyRequired = apiKeyRequired != null && apiKeyRequired.enabled();
+
+        RejectOnMonkeyTest rejectOnMonkeyTest = ReflectionCache.getAnnotationInherited(method, RejectOnMonkeyTest.class);
+        this.rejectOnMonkeyTest = rejectOnMonkeyTest != null && rejectOnMonkeyTest.enabled();
+    }
+
+    public static InvocationPlan compile(Method method, List<JudoAdapter> adapters) {
+        return new InvocationPlan(method, adapters);
+    }
+
+    private static RequestMethod.Modifier createModifier(RequestMethod requestMethod) {
+        try {
+            return requestMethod.modifier().newInstance();
+        } catch (Exception e) {
+            throw new JudoException("Can't create modifier " + requestMethod.modifier().getName(), e);
+        }
+    }
+
+    private static JudoAdapter findAdapter(List<JudoAdapter> adapters, Type returnType) {
+        for (JudoAdapter adapter : adapters) {
+            if (adapter.canHandle(returnType)) {
+                return adapter;
+            }
+        }
+        return null;
+    }
+
+    private static boolean[] findIgnoreNullParams(Method method, Annotation[][] parameterAnnotations) {
+        IgnoreNullParam interfaceIgnore = ReflectionCache.getAnnotation(method.getDeclaringClass(), IgnoreNullParam.class);
+        boolean[] result = new boolean[parameterAnnotations.length];
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            IgnoreNullParam ignoreNullParam = ReflectionCache.findAnnotation(parameterAnnotations[i], IgnoreNullParam.class);
+            if (ignoreNullParam != null) {
+                result[i] = ignoreNullParam.value();
+            } else if (interfaceIgnore != null) {
+                result[i] = interfaceIgnore.value();
+            }
+        }
+        return result;
+    }
+
+    public CacheMethod createCacheMethod(String url, LocalCache.CacheLevel level) {
+        return new CacheMethod(methodId, name, interfaceName, url, level);
+    }
+
+    public CacheMethod createCacheMethod(String url, LocalCache.CacheLevel level, Type resultType) {
+        return new CacheMethod(methodId, name, interfaceName, url, level, resultType);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public boolean isRequestMethod() {
+        return requestMethod != null;
+    }
+
+    public RequestMethod getRequestMethod() {
+        return requestMethod;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    public RequestMethod.Modifier getModifier() {
+        return modifier;
+    }
+
+    public JudoAdapter getAdapter() {
+        return adapter;
+    }
+
+    public Type getReturnType() {
+        return returnType;
+    }
+
+    public Type getGenericReturnType() {
+        return genericReturnType;
+    }
+
+    public Type[] getGenericParameterTypes() {
+        return genericParameterTypes;
+    }
+
+    public Annotation[][] getParameterAnnotations() {
+        return parameterAnnotations;
+    }
+
+    public boolean isIgnoreNullParam(int index) {
+        return index < ignoreNullParams.length && ignoreNullParams[index];
+    }
+
+    public LocalCache getLocalCache() {
+        return localCache;
+    }
+
+    public SingleCall getSingleCall() {
+        return singleCall;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    public Hedge getHedge() {
+        return hedge;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public boolean isRetryDisabled() {
+        return retryDisabled;
+    }
+
+    public boolean isApiKeyRequired() {
+        return apiKeyRequired;
+    }
+
+    public boolean isRejectOnMonkeyTest() {
+        return rejectOnMonkeyTest;
+    }
+}
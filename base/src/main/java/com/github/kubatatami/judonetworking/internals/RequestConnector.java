@@ -9,11 +9,16 @@ import com.github.kubatatami.judonetworking.CacheInfo;
 import com.github.kubatatami.judonetworking.Endpoint;
 import com.github.kubatatami.judonetworking.Request;
 import com.github.kubatatami.judonetworking.annotations.Base64Param;
+import com.github.kubatatami.judonetworking.annotations.Hedge;
 import com.github.kubatatami.judonetworking.annotations.LocalCache;
 import com.github.kubatatami.judonetworking.controllers.ProtocolController;
 import com.github.kubatatami.judonetworking.exceptions.CancelException;
 import com.github.kubatatami.judonetworking.exceptions.ConnectionException;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.exceptions.NotModifiedException;
+import com.github.kubatatami.judonetworking.internals.batches.BatchTask;
+import com.github.kubatatami.judonetworking.internals.cache.CacheControl;
+import com.github.kubatatami.judonetworking.internals.cache.CacheAccess;
 import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
 import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
 import com.github.kubatatami.judonetworking.internals.results.CacheResult;
@@ -22,6 +27,7 @@ import com.github.kubatatami.judonetworking.internals.results.RequestResult;
 import com.github.kubatatami.judonetworking.internals.results.RequestSuccessResult;
 import com.github.kubatatami.judonetworking.internals.stats.MethodStat;
 import com.github.kubatatami.judonetworking.internals.stats.TimeStat;
+import com.github.kubatatami.judonetworking.internals.streams.RepeatableStreamEntity;
 import com.github.kubatatami.judonetworking.internals.streams.RequestInputStream;
 import com.github.kubatatami.judonetworking.internals.virtuals.VirtualCallback;
 import com.github.kubatatami.judonetworking.internals.virtuals.VirtualServerInfo;
@@ -30,13 +36,16 @@ import com.github.kubatatami.judonetworking.transports.TransportLayer;
 import com.github.kubatatami.judonetworking.utils.FileUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RequestConnector {
 
@@ -62,12 +71,10 @@ public class RequestConnector {
             ProtocolController controller = rpc.getProtocolController();
             result = handleVirtualServerRequest(request, timeStat);
             if (result == null) {
-                ProtocolController.RequestInfo requestInfo = controller.createRequest(
-                        request.getCustomUrl() == null ? rpc.getUrl() : request.getCustomUrl(),
-                        request);
+                rpc.getCircuitBreakers().check(request);
+                ProtocolController.RequestInfo requestInfo = createRequestInfo(request);
                 timeStat.tickCreateTime();
-                throwErrorOnMonkey(request);
-                lossCheck();
+                checkBeforeSend(request);
                 EndpointImpl.checkThread();
                 delay(request.getDelay());
                 EndpointImpl.checkThread();
@@ -75,22 +82,7 @@ public class RequestConnector {
                         rpc.getDebugFlags(), request.getMethod());
                 EndpointImpl.checkThread();
 
-                InputStream connectionStream = conn.getStream();
-                if ((rpc.getDebugFlags() & Endpoint.RESPONSE_DEBUG) > 0) {
-                    String resStr = FileUtils.convertStreamToString(conn.getStream());
-                    longLog("Response body(" + request.getName() + ", " + resStr.length() + " Bytes)", resStr, JudoLogger.LogLevel.INFO);
-                    connectionStream = new ByteArrayInputStream(resStr.getBytes());
-                }
-                RequestInputStream stream = new RequestInputStream(connectionStream, timeStat, conn.getContentLength());
-                EndpointImpl.checkThread();
-                request.setHeaders(conn.getHeaders());
-                result = controller.parseResponse(request, stream, conn.getHeaders());
-                EndpointImpl.checkThread();
-                try {
-                    stream.close();
-                } catch (Exception ignored) {
-                }
-                timeStat.tickParseTime();
+                result = readResponse(request, conn, timeStat);
             }
             return result;
         } catch (JudoException e) {
@@ -104,6 +96,140 @@ public class RequestConnector {
         }
     }
 
+    RequestResult readResponse(RequestImpl request, TransportLayer.Connection conn, TimeStat timeStat) throws Exception {
+        InputStream connectionStream = conn.getStream();
+        if ((rpc.getDebugFlags() & Endpoint.RESPONSE_DEBUG) > 0) {
+            String resStr = FileUtils.convertStreamToString(conn.getStream());
+            longLog("Response body(" + request.getName() + ", " + resStr.length() + " Bytes)", resStr, JudoLogger.LogLevel.INFO);
+            connectionStream = new ByteArrayInputStream(resStr.getBytes());
+        }
+        RequestInputStream stream = new RequestInputStream(connectionStream, timeStat, conn.getContentLength());
+        EndpointImpl.checkThread();
+        request.setHeaders(conn.getHeaders());
+        RequestResult result = rpc.getProtocolController().parseResponse(request, stream, conn.getHeaders());
+        EndpointImpl.checkThread();
+        try {
+            stream.close();
+        } catch (Exception ignored) {
+        }
+        timeStat.tickParseTime();
+        return result;
+    }
+
+    /**
+     * Creates request info or reuses the one of previous attempt if its body can be replayed.
+     */
+    ProtocolController.RequestInfo createRequestInfo(RequestImpl request) throws JudoException {
+        ProtocolController.RequestInfo requestInfo = request.getRequestInfo();
+        if (requestInfo != null && isReplayable(requestInfo)) {
+            return requestInfo;
+        }
+        requestInfo = rpc.getProtocolController().createRequest(
+                request.getCustomUrl() == null ? rpc.getUrl() : request.getCustomUrl(),
+                request);
+        addConditionalHeaders(request, requestInfo);
+        if (request.getRetryPolicy() != null) {
+            request.setRequestInfo(requestInfo);
+        }
+        return requestInfo;
+    }
+
+    private void addConditionalHeaders(RequestImpl request, ProtocolController.RequestInfo requestInfo) {
+        CacheResult revalidationCache = request.getRevalidationCache();
+        if (revalidationCache == null) {
+            return;
+        }
+        String etag = CacheControl.findHeader(revalidationCache.headers, "ETag");
+        String lastModified = CacheControl.findHeader(revalidationCache.headers, "Last-Modified");
+        requestInfo.customHeaders = requestInfo.customHeaders != null
+                ? new HashMap<>(requestInfo.customHeaders) : new HashMap<String, String>();
+        if (etag != null) {
+            requestInfo.customHeaders.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            requestInfo.customHeaders.put("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * Remembers cached data with ETag or Last-Modified header, so request is sent conditionally
+     * and 304 response reuses the data.
+     */
+    void prepareRevalidation(RequestImpl request, CacheResult localCacheObject) {
+        if (!rpc.isCacheEnabled() || !request.isLocalCacheable() || !request.getLocalCache().revalidate()) {
+            return;
+        }
+        CacheResult cacheResult = localCacheObject != null && localCacheObject.result ? localCacheObject : findExpiredCache(request);
+        if (cacheResult.result && (CacheControl.findHeader(cacheResult.headers, "ETag") != null || CacheControl.findHeader(cacheResult.headers, "Last-Modified") != null)) {
+            request.setRevalidationCache(cacheResult);
+        }
+    }
+
+    private CacheResult findExpiredCache(RequestImpl request) {
+        if (request.getLocalCacheLifeTime() == LocalCache.INFINITE && !request.isServerCacheControl()) {
+            return new CacheResult();
+        }
+        CacheResult cacheResult = CacheAccess.get(rpc.getMemoryCache(), request.getMethodKey(), LocalCache.INFINITE, request.getLocalCacheSize());
+        LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
+        if (!cacheResult.result && cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
+            CacheMethod cacheMethod = request.getInvocationPlan().createCacheMethod(rpc.getUrl(), cacheLevel, request.getReturnType());
+            cacheResult = CacheAccess.get(rpc.getDiskCache(), cacheMethod, request.getMethodKey(), LocalCache.INFINITE);
+        }
+        return cacheResult;
+    }
+
+    private boolean isReplayable(ProtocolController.RequestInfo requestInfo) {
+        if (requestInfo.entity == null) {
+            return true;
+        }
+        if (requestInfo.entity instanceof RepeatableStreamEntity && ((RepeatableStreamEntity) requestInfo.entity).isRepeatable()) {
+            try {
+                ((RepeatableStreamEntity) requestInfo.entity).reset();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Schedules next attempt of failed request if its retry policy and endpoint retry budget allow it.
+     *
+     * @return True if request will be retried
+     */
+    public boolean scheduleRetry(final RequestImpl request, JudoException e) {
+        RetryPolicy retryPolicy = request.getRetryPolicy();
+        if (retryPolicy == null || request.isAbandoned() || !retryPolicy.isRetryable(e, request.getRetryCount())
+                || !rpc.getRetryBudget().tryAcquire()) {
+            return false;
+        }
+        long delay = retryPolicy.getDelay(request.getRetryCount());
+        request.incrementRetryCount();
+        if ((rpc.getDebugFlags() & Endpoint.REQUEST_LINE_DEBUG) > 0) {
+            JudoLogger.log("Retry " + request.getRetryCount() + " of request " + request.getName() + " in " + delay + "ms.", JudoLogger.LogLevel.DEBUG);
+        }
+        AsyncRequestCall.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (request.isAbandoned()) {
+                    return;
+                }
+                if (rpc.isAsyncExecution(request)) {
+                    callAsync(request);
+                } else {
+                    request.setFuture(rpc.getExecutorService().submit(request));
+                }
+            }
+        }, delay);
+        return true;
+    }
+
+    void checkBeforeSend(RequestImpl request) throws JudoException {
+        throwErrorOnMonkey(request);
+        lossCheck();
+    }
+
     public static Object[] addElement(Object[] org, Object added) {
         Object[] result = new Object[org.length + 1];
         System.arraycopy(org, 0, result, 0, org.length);
@@ -176,8 +302,8 @@ public class RequestConnector {
     protected void findAndCreateBase64(RequestImpl request) {
         if (request.getArgs() != null) {
             int i = 0;
-            if (request.getMethod() != null) {
-                Annotation[][] annotations = request.getMethod().getParameterAnnotations();
+            if (request.getInvocationPlan() != null) {
+                Annotation[][] annotations = request.getInvocationPlan().getParameterAnnotations();
                 for (Object object : request.getArgs()) {
 
                     if (object instanceof byte[]) {
@@ -199,92 +325,218 @@ public class RequestConnector {
             CacheResult localCacheObject = null;
             TimeStat timeStat = new TimeStat(request);
 
-
-            if ((rpc.isCacheEnabled() && request.isLocalCacheable())) {
-                LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
-                localCacheObject = rpc.getMemoryCache().get(request.getMethodId(), request.getArgs(), request.getLocalCacheLifeTime(), request.getLocalCacheSize());
-                if (localCacheObject.result) {
-                    if (request.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
-                        request.invokeStart(new CacheInfo(true, localCacheObject.time));
-                        request.setHeaders(localCacheObject.headers);
-                        timeStat.tickCacheTime();
-                        if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
-                            localCacheObject.object = rpc.getClonner().clone(localCacheObject.object);
-                        }
-                        return localCacheObject.object;
+            if ((rpc.isCacheEnabled() && request.isLocalCacheable() && !request.isCacheRefresh())) {
+                localCacheObject = findLocalCache(request);
+                if (localCacheObject.result && request.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
+                    if (localCacheObject.stale) {
+                        scheduleCacheRefresh(request);
                     }
-                } else if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
-                    CacheMethod cacheMethod = new CacheMethod(CacheMethod.getMethodId(request.getMethod()), request.getName(), request.getMethod().getDeclaringClass().getSimpleName(), rpc.getUrl(), cacheLevel);
-                    localCacheObject = rpc.getDiskCache().get(cacheMethod, Arrays.deepToString(request.getArgs()), request.getLocalCacheLifeTime());
-                    if (localCacheObject.result) {
-                        rpc.getMemoryCache().put(request.getMethodId(),
-                                request.getArgs(),
-                                localCacheObject.object,
-                                request.getLocalCacheSize(),
-                                localCacheObject.headers);
-                        if (request.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
-                            request.invokeStart(new CacheInfo(true, localCacheObject.time));
-                            request.setHeaders(localCacheObject.headers);
-                            timeStat.tickCacheTime();
-                            return localCacheObject.object;
-                        }
+                    request.invokeStart(new CacheInfo(true, localCacheObject.time, localCacheObject.stale));
+                    request.setHeaders(localCacheObject.headers);
+                    timeStat.tickCacheTime();
+                    if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
+                        return rpc.getClonner().clone(localCacheObject.object);
                     }
-
+                    return localCacheObject.object;
                 }
             }
 
-
+            prepareRevalidation(request, localCacheObject);
             findAndCreateBase64(request);
             request.invokeStart(new CacheInfo(false, 0L));
             RequestResult result = sendRequest(request, timeStat);
+            return handleResult(request, result, localCacheObject, timeStat);
+        } catch (JudoException e) {
+            refreshErrorStat(request);
+            throw e;
+        }
+    }
 
-            if (result instanceof ErrorResult) {
-                if (localCacheObject != null && localCacheObject.result) {
-                    LocalCache.OnlyOnError onlyOnErrorMode = request.getLocalCacheOnlyOnErrorMode();
-                    if (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_ALL_ERROR) ||
-                            (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_CONNECTION_ERROR) && result.error instanceof ConnectionException)) {
-                        timeStat.tickCacheTime();
-                        return localCacheObject.object;
-                    }
-                }
-            }
+    /**
+     * Sends request without holding a thread during network I/O if transport supports it.
+     */
+    public void callAsync(RequestImpl request) {
+        if (request.getMethod() != null && rpc.getVirtualServers().containsKey(request.getMethod().getDeclaringClass())) {
+            request.setFuture(rpc.getExecutorService().submit(request));
+        } else {
+            new AsyncRequestCall(rpc, this, transportLayer, request).start();
+        }
+    }
 
-            if (result.error != null) {
-                throw result.error;
-            }
+    public boolean isAsyncSupported() {
+        return transportLayer.isAsyncSupported();
+    }
 
+    long getHedgeDelay(RequestImpl request) {
+        Hedge hedge = request.getHedge();
+        if (hedge == null) {
+            return 0;
+        }
+        MethodStat stat = rpc.getStats().get(request.getName());
+        if (stat != null && stat.getLatencySamples() >= hedge.minSamples()) {
+            return Math.max(stat.getLatencyPercentile(hedge.percentile()), 1);
+        }
+        return hedge.delay();
+    }
 
-            timeStat.tickEndTime();
+    /**
+     * Sends request which refreshes stale cache data in background with low priority.
+     */
+    void scheduleCacheRefresh(RequestImpl request) {
+        if (!rpc.getCacheRefreshes().add(request.getMethodKey())) {
+            return;
+        }
+        RequestImpl refresh = request.createCacheRefresh(request.getLocalCache().refreshCallback());
+        if ((rpc.getDebugFlags() & Endpoint.CACHE_DEBUG) > 0) {
+            JudoLogger.log("Refresh stale cache of " + request.getName(), JudoLogger.LogLevel.DEBUG);
+        }
+        boolean submitted = false;
+        try {
+            if (rpc.isAsyncExecution(refresh)) {
+                callAsync(refresh);
+            } else {
+                refresh.setFuture(rpc.getExecutorService().submit(refresh));
+            }
+            submitted = true;
+        } finally {
+            if (!submitted) {
+                rpc.getCacheRefreshes().remove(request.getMethodKey());
+            }
+        }
+    }
 
+    CacheResult findLocalCache(RequestImpl request) {
+        LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
+        int lifeTime = request.getLocalCacheLifeTime();
+        int staleTime = request.getLocalCacheStaleTime();
+        int searchLifeTime;
+        if (request.isServerCacheControl()) {
+            searchLifeTime = LocalCache.INFINITE;
+        } else if (lifeTime != LocalCache.INFINITE && staleTime > 0) {
+            searchLifeTime = (int) Math.min((long) lifeTime + staleTime, Integer.MAX_VALUE);
+        } else {
+            searchLifeTime = lifeTime;
+        }
+        CacheResult localCacheObject = checkFreshness(request,
+                CacheAccess.get(rpc.getMemoryCache(), request.getMethodKey(), searchLifeTime, request.getLocalCacheSize()));
+        if (localCacheObject.result) {
+            if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE
+                    && request.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
+                localCacheObject.object = rpc.getClonner().clone(localCacheObject.object);
+            }
+        } else if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
+            CacheMethod cacheMethod = request.getInvocationPlan().createCacheMethod(rpc.getUrl(), cacheLevel, request.getReturnType());
+            localCacheObject = checkFreshness(request,
+                    CacheAccess.get(rpc.getDiskCache(), cacheMethod, request.getMethodKey(), searchLifeTime));
+            if (localCacheObject.result) {
+                if (!localCacheObject.stale) {
+                    CacheAccess.put(rpc.getMemoryCache(), request.getMethodKey(),
+                            localCacheObject.object,
+                            request.getLocalCacheSize(),
+                            localCacheObject.headers);
+                }
+                // memory cache or a pending disk write may keep the instance
+                if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE
+                        && request.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
+                    localCacheObject.object = rpc.getClonner().clone(localCacheObject.object);
+                }
+            }
+        }
+        return localCacheObject;
+    }
 
-            if (rpc.isTimeProfiler()) {
-                refreshStat(request.getName(),
-                        timeStat.getMethodTime(),
-                        timeStat.getAllTime()
-                );
+    /**
+     * Marks cached data as stale if it's past its lifetime but within stale-while-revalidate window,
+     * data past both is returned as not found.
+     */
+    private CacheResult checkFreshness(RequestImpl request, CacheResult cacheResult) {
+        if (!cacheResult.result) {
+            return cacheResult;
+        }
+        long lifeTime = getLifeTime(request, cacheResult);
+        long age = System.currentTimeMillis() - cacheResult.time;
+        if (age >= lifeTime) {
+            if (age < lifeTime + request.getLocalCacheStaleTime()) {
+                cacheResult.stale = true;
+            } else {
+                return new CacheResult();
             }
+        }
+        return cacheResult;
+    }
 
-            if ((rpc.getDebugFlags() & Endpoint.TIME_DEBUG) > 0) {
-                timeStat.logTime("End single request(" + request.getName() + "):");
+    private long getLifeTime(RequestImpl request, CacheResult cacheResult) {
+        if (request.isServerCacheControl()) {
+            long lifeTime = CacheControl.getLifeTime(cacheResult.headers, cacheResult.time);
+            if (lifeTime != CacheControl.NOT_SPECIFIED) {
+                return lifeTime;
             }
+        }
+        int lifeTime = request.getLocalCacheLifeTime();
+        return lifeTime == LocalCache.INFINITE ? Long.MAX_VALUE : lifeTime;
+    }
 
-            if ((rpc.isCacheEnabled() && request.isLocalCacheable())) {
-                rpc.getMemoryCache().put(request.getMethodId(), request.getArgs(), result.result, request.getLocalCacheSize(), request.getHeaders());
-                if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
-                    result.result = rpc.getClonner().clone(result.result);
+    Object handleResult(RequestImpl request, RequestResult result, CacheResult localCacheObject, TimeStat timeStat) throws JudoException {
+        if (result.error instanceof NotModifiedException && request.getRevalidationCache() != null) {
+            CacheResult revalidationCache = request.getRevalidationCache();
+            if ((rpc.getDebugFlags() & Endpoint.CACHE_DEBUG) > 0) {
+                JudoLogger.log("Cache(" + request.getName() + "): Not modified, cached data revalidated", JudoLogger.LogLevel.DEBUG);
+            }
+            request.setHeaders(CacheControl.mergeRevalidationHeaders(revalidationCache.headers,
+                    ((NotModifiedException) result.error).getHeaders()));
+            result = new RequestSuccessResult(request.getId(), revalidationCache.object);
+        }
+        rpc.getCircuitBreakers().onResult(request, result.error);
+        if (result instanceof ErrorResult) {
+            if (localCacheObject != null && localCacheObject.result) {
+                LocalCache.OnlyOnError onlyOnErrorMode = request.getLocalCacheOnlyOnErrorMode();
+                if (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_ALL_ERROR) ||
+                        (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_CONNECTION_ERROR) && result.error instanceof ConnectionException)) {
+                    timeStat.tickCacheTime();
+                    if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
+                        return rpc.getClonner().clone(localCacheObject.object);
+                    }
+                    return localCacheObject.object;
                 }
-                LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
-                if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
+            }
+        }
 
-                    CacheMethod cacheMethod = new CacheMethod(CacheMethod.getMethodId(request.getMethod()), request.getName(), request.getMethod().getDeclaringClass().getSimpleName(), rpc.getUrl(), cacheLevel);
-                    rpc.getDiskCache().put(cacheMethod, Arrays.deepToString(request.getArgs()), result.result, request.getLocalCacheSize(), request.getHeaders());
-                }
+        if (result.error != null) {
+            throw result.error;
+        }
+
+        rpc.getRetryBudget().onSuccess();
+
+
+        timeStat.tickEndTime();
+
+
+        if (rpc.isTimeProfiler()) {
+            refreshStat(request.getName(),
+                    timeStat.getMethodTime(),
+                    timeStat.getAllTime()
+            );
+        }
+
+        if ((rpc.getDebugFlags() & Endpoint.TIME_DEBUG) > 0) {
+            timeStat.logTime("End single request(" + request.getName() + "):");
+        }
+
+        if (rpc.isCacheEnabled() && request.isLocalCacheable()
+                && !(request.isServerCacheControl() && CacheControl.isNoStore(request.getHeaders()))) {
+            Object cachedObject = result.result;
+            CacheAccess.put(rpc.getMemoryCache(), request.getMethodKey(), cachedObject, request.getLocalCacheSize(), request.getHeaders());
+            if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
+                result.result = rpc.getClonner().clone(cachedObject);
+            }
+            LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
+            if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
+
+                CacheMethod cacheMethod = request.getInvocationPlan().createCacheMethod(rpc.getUrl(), cacheLevel, request.getReturnType());
+                CacheAccess.put(rpc.getDiskCache(), cacheMethod, request.getMethodKey(), cachedObject, request.getLocalCacheSize(), request.getHeaders());
             }
-            return result.result;
-        } catch (JudoException e) {
-            refreshErrorStat(request);
-            throw e;
         }
+        return result.result;
     }
 
     public List<RequestResult> callBatch(List<RequestImpl> requests, ProgressObserver progressObserver, Integer timeout) throws JudoException {
@@ -343,7 +595,11 @@ public class RequestConnector {
                     findAndCreateBase64(request);
                 }
                 if (copyRequest.size() > 0) {
-                    results.addAll(callRealBatch(copyRequest, progressObserver, timeout, requestsName));
+                    if (isBatchSplitRequired(copyRequest)) {
+                        results.addAll(callSplitBatch(copyRequest, progressObserver, timeout));
+                    } else {
+                        results.addAll(callRealBatch(copyRequest, progressObserver, timeout, requestsName));
+                    }
                 }
             } else {
                 for (RequestImpl request : requests) {
@@ -359,45 +615,154 @@ public class RequestConnector {
         return results;
     }
 
+    private boolean isBatchSplitRequired(List<RequestImpl> requests) {
+        if (rpc.getBatchSplitParts() < 2 || requests.size() < 2 || requests.size() <= rpc.getBatchSplitMinSize()) {
+            return false;
+        }
+        if (rpc.getBatchSplitMinWeight() > 0) {
+            long weight = 0;
+            for (RequestImpl request : requests) {
+                weight += request.getWeight();
+            }
+            return weight > rpc.getBatchSplitMinWeight();
+        }
+        return true;
+    }
+
+    private List<RequestResult> callSplitBatch(List<RequestImpl> requests, ProgressObserver progressObserver, Integer timeout) {
+        int partsNo = Math.min(rpc.getBatchSplitParts(), requests.size());
+        List<List<RequestImpl>> parts = BatchTask.timeAssignRequests(new ArrayList<>(requests), partsNo);
+        synchronized (progressObserver) {
+            progressObserver.setMaxProgress(progressObserver.getMaxProgress() + (partsNo - 1) * TimeStat.TICKS);
+        }
+        List<BatchTask> tasks = new ArrayList<>(partsNo);
+        for (List<RequestImpl> part : parts) {
+            tasks.add(new BatchTask(rpc, progressObserver, timeout, part));
+        }
+        // first part runs on calling thread, the rest is run by joining thread if no worker is free
+        for (int i = 1; i < tasks.size(); i++) {
+            tasks.get(i).executePart();
+        }
+        tasks.get(0).runPart();
+        List<RequestResult> results = new ArrayList<>(requests.size());
+        for (BatchTask task : tasks) {
+            JudoException ex;
+            try {
+                task.join();
+                ex = task.getEx();
+            } catch (JudoException e) {
+                ex = e;
+            }
+            if (ex == null && task.getResponse() != null) {
+                results.addAll(task.getResponse());
+            } else {
+                for (RequestImpl request : task.getRequests()) {
+                    results.add(new ErrorResult(request.getId(), ex != null ? ex : new JudoException("No batch part response.")));
+                }
+            }
+        }
+        return results;
+    }
+
     private void sendBatchAsNormalRequests(List<RequestImpl> requests, TimeStat timeStat, List<RequestResult> results) {
-        List<Thread> threads = new ArrayList<>();
-        for (final RequestImpl request : requests) {
-            if (!request.isCancelled()) {
-                threads.add(sendBatchAsNormalRequest(request, results, timeStat));
+        List<RequestImpl> activeRequests = new ArrayList<>(requests.size());
+        for (RequestImpl request : requests) {
+            if (!request.isAbandoned()) {
+                activeRequests.add(request);
             }
         }
-        for (Thread thread : threads) {
+        if (activeRequests.size() == 0) {
+            return;
+        }
+        BatchFanOut fanOut = new BatchFanOut(activeRequests, timeStat);
+        int limit = rpc.getBatchFanOutLimit() > 0 ? rpc.getBatchFanOutLimit() : activeRequests.size();
+        int workers = Math.min(limit, activeRequests.size());
+        for (int i = 1; i < workers; i++) {
             try {
-                thread.join();
-            } catch (InterruptedException e) {
-                throw new JudoException(e);
+                rpc.getExecutorService().execute(fanOut);
+            } catch (RejectedExecutionException ignored) {
+                // calling thread sends the remaining requests
+                break;
+            }
+        }
+        fanOut.run();
+        try {
+            fanOut.await();
+        } catch (InterruptedException e) {
+            throw new JudoException(e);
+        }
+        for (RequestResult result : fanOut.results) {
+            if (result != null) {
+                results.add(result);
             }
         }
     }
 
-    private Thread sendBatchAsNormalRequest(final RequestImpl request, final List<RequestResult> results, final TimeStat timeStat) {
-        Thread thread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                RequestResult result = sendRequest(request, timeStat);
-                timeStat.tickEndTime();
-                if (rpc.isTimeProfiler()) {
-                    if (result.error != null) {
-                        refreshErrorStat(request);
-                    } else {
-                        refreshStat(request.getName(),
-                                timeStat.getMethodTime(),
-                                timeStat.getAllTime()
-                        );
+    private RequestResult sendBatchAsNormalRequest(RequestImpl request, TimeStat timeStat) {
+        RequestResult result = sendRequest(request, timeStat);
+        rpc.getCircuitBreakers().onResult(request, result.error);
+        timeStat.tickEndTime();
+        if (rpc.isTimeProfiler()) {
+            if (result.error != null) {
+                refreshErrorStat(request);
+            } else {
+                refreshStat(request.getName(),
+                        timeStat.getMethodTime(),
+                        timeStat.getAllTime()
+                );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends batch requests one by one on a limited number of workers. The calling thread is one of
+     * the workers, so the batch completes even if no executor thread becomes free.
+     */
+    private class BatchFanOut implements Runnable {
+
+        private final List<RequestImpl> requests;
+
+        private final RequestResult[] results;
+
+        private final TimeStat timeStat;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        private int remaining;
+
+        BatchFanOut(List<RequestImpl> requests, TimeStat timeStat) {
+            this.requests = requests;
+            this.timeStat = timeStat;
+            this.results = new RequestResult[requests.size()];
+            this.remaining = requests.size();
+        }
+
+        @Override
+        public void run() {
+            int i;
+            while ((i = next.getAndIncrement()) < requests.size()) {
+                RequestImpl request = requests.get(i);
+                try {
+                    results[i] = sendBatchAsNormalRequest(request, timeStat);
+                } catch (JudoException e) {
+                    results[i] = new ErrorResult(request.getId(), e);
+                } finally {
+                    synchronized (this) {
+                        remaining--;
+                        if (remaining == 0) {
+                            notifyAll();
+                        }
                     }
                 }
-                synchronized (results) {
-                    results.add(result);
-                }
             }
-        });
-        thread.start();
-        return thread;
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (remaining > 0) {
+                wait();
+            }
+        }
     }
 
     private void delay(int requestDelay) {
@@ -471,12 +836,11 @@ public class RequestConnector {
 
     private List<RequestResult> removeErrorOnMonkeyRequests(List<RequestImpl> requests) {
         List<RequestResult> responses = new ArrayList<>();
-        for (int i = requests.size(); i >= 0; i--) {
+        for (int i = requests.size() - 1; i >= 0; i--) {
             try {
                 throwErrorOnMonkey(requests.get(i));
             } catch (ConnectionException ex) {
-                requests.remove(i);
-                responses.add(new ErrorResult(requests.get(i).getId(), ex));
+                responses.add(new ErrorResult(requests.remove(i).getId(), ex));
             }
         }
         return responses;
@@ -522,10 +886,11 @@ public class RequestConnector {
         stat.methodTime = ((stat.methodTime * stat.requestCount) + methodTime) / (stat.requestCount + 1);
         stat.allTime = ((stat.allTime * stat.requestCount) + allTime) / (stat.requestCount + 1);
         stat.requestCount++;
+        stat.addLatency(methodTime);
         rpc.saveStat();
     }
 
-    private void refreshErrorStat(Request request) {
+    void refreshErrorStat(Request request) {
         if (!request.isCancelled()) {
             MethodStat stat = getStat(request.getName());
             stat.errors++;
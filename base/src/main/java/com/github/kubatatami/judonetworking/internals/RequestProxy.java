@@ -5,7 +5,6 @@ import android.util.Pair;
 import com.github.kubatatami.judonetworking.AsyncResult;
 import com.github.kubatatami.judonetworking.CacheInfo;
 import com.github.kubatatami.judonetworking.Endpoint;
-import com.github.kubatatami.judonetworking.adapters.JudoAdapter;
 import com.github.kubatatami.judonetworking.annotations.LocalCache;
 import com.github.kubatatami.judonetworking.annotations.NamePrefix;
 import com.github.kubatatami.judonetworking.annotations.NameSuffix;
@@ -17,12 +16,15 @@ import com.github.kubatatami.judonetworking.exceptions.ConnectionException;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
 import com.github.kubatatami.judonetworking.exceptions.ParseException;
 import com.github.kubatatami.judonetworking.internals.batches.BatchProgressObserver;
+import com.github.kubatatami.judonetworking.internals.cache.CacheAccess;
 import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
 import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
 import com.github.kubatatami.judonetworking.internals.results.CacheResult;
 import com.github.kubatatami.judonetworking.internals.results.ErrorResult;
 import com.github.kubatatami.judonetworking.internals.results.RequestResult;
 import com.github.kubatatami.judonetworking.internals.results.RequestSuccessResult;
+import com.github.kubatatami.judonetworking.internals.stats.MethodStat;
 import com.github.kubatatami.judonetworking.internals.stats.TimeStat;
 import com.github.kubatatami.judonetworking.logs.ErrorLogger;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
@@ -31,9 +33,7 @@ import com.github.kubatatami.judonetworking.utils.ReflectionCache;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -70,29 +70,6 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
         batchEnabled = (mode == EndpointImpl.BatchMode.MANUAL);
     }
 
-    protected final Runnable batchRunnable = new Runnable() {
-        @Override
-        public void run() {
-            try {
-                Thread.sleep(rpc.getProtocolController().getAutoBatchTime());
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            if (batchRequests.size() == 1) {
-                RequestImpl request;
-                synchronized (batchRequests) {
-                    request = batchRequests.get(0);
-                    batchRequests.clear();
-                    batchEnabled = false;
-                }
-                Future<?> future = rpc.getExecutorService().submit(request);
-                request.setFuture(future);
-            } else {
-                callBatch();
-            }
-        }
-    };
-
     public void setBatchFatal(boolean batchFatal) {
         this.batchFatal = batchFatal;
     }
@@ -124,6 +101,7 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
                 current = true;
             } else if (current && !element.getClassName().contains(packageName)
                     && !element.getClassName().contains("$Proxy")
+                    && !element.getClassName().endsWith(GeneratedServices.SUFFIX)
                     && !element.getClassName().contains("java.lang.reflect.Proxy")) {
                 return element;
             }
@@ -140,9 +118,9 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
                 return null;
             } else {
                 if (mode == EndpointImpl.BatchMode.AUTO) {
-                    batchRequests.add(request);
-                    batchEnabled = true;
-                    rpc.getExecutorService().execute(batchRunnable);
+                    rpc.getAutoBatchAggregator().add(request);
+                } else if (rpc.isAsyncExecution(request)) {
+                    rpc.getRequestConnector().callAsync(request);
                 } else {
                     Future<?> future = rpc.getExecutorService().submit(request);
                     request.setFuture(future);
@@ -157,10 +135,11 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
     public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
         RequestImpl request = null;
         try {
-            RequestMethod ann = ReflectionCache.getAnnotation(m, RequestMethod.class);
-            if (ann != null) {
-                String name = createMethodName(m, ann);
-                int timeout = rpc.getRequestConnector().getMethodTimeout();
+            InvocationPlan plan = rpc.getInvocationPlan(m);
+            if (plan.isRequestMethod()) {
+                RequestMethod ann = plan.getRequestMethod();
+                String name = plan.getName();
+                int timeout = plan.getTimeout() != 0 ? plan.getTimeout() : rpc.getMethodTimeout(name);
 
 
                 if ((rpc.getDebugFlags() & Endpoint.REQUEST_LINE_DEBUG) > 0) {
@@ -180,14 +159,10 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
                     }
                 }
 
-                if (ann.timeout() != 0) {
-                    timeout = ann.timeout();
-                }
-
                 if (!ann.async()) {
-                    request = new RequestImpl(rpc, m, name, ann, args, m.getReturnType(),
+                    request = new RequestImpl(rpc, m, name, ann, args, plan.getReturnType(),
                             timeout, null, rpc.getProtocolController().getAdditionalRequestData());
-                    ann.modifier().newInstance().modify(request);
+                    plan.getModifier().modify(request);
                     rpc.filterNullArgs(request);
                     if (request.getSingleCall() != null) {
                         throw new JudoException("SingleCall is not supported on no async method.");
@@ -195,12 +170,12 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
                     rpc.startRequest(request);
                     return rpc.getRequestConnector().call(request);
                 } else {
-                    MethodInfo methodInfo = getMethodInfo(m.getGenericReturnType(), args, ReflectionCache.getGenericParameterTypes(m));
+                    MethodInfo methodInfo = getMethodInfo(plan, args);
                     request = new RequestImpl(rpc, m, name, ann, methodInfo.getArgs(), methodInfo.getResultType(),
                             timeout, methodInfo.getCallback(), rpc.getProtocolController().getAdditionalRequestData());
-                    ann.modifier().newInstance().modify(request);
+                    plan.getModifier().modify(request);
                     rpc.filterNullArgs(request);
-                    if (registerSingleCallMethod(m, request, name)) {
+                    if (registerSingleCallMethod(request, name)) {
                         return request;
                     }
                     rpc.startRequest(request);
@@ -231,9 +206,12 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
         }
     }
 
-    private boolean registerSingleCallMethod(Method m, RequestImpl request, String name) {
+    private boolean registerSingleCallMethod(RequestImpl request, String name) {
+        if (request.getSingleCall() != null && request.getSingleCall().mode() == SingleCall.SingleMode.COALESCE) {
+            return mode != EndpointImpl.BatchMode.MANUAL && registerCoalescedRequest(request, name);
+        }
         if (request.getSingleCall() != null) {
-            if (rpc.getSingleCallMethods().containsKey(CacheMethod.getMethodId(m))) {
+            if (rpc.getSingleCallMethods().containsKey(request.getMethodId())) {
                 SingleCall.SingleMode mode = request.getSingleCall().mode();
 
                 if (mode == SingleCall.SingleMode.CANCEL_NEW) {
@@ -244,7 +222,7 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
                     return true;
                 }
                 if (mode == SingleCall.SingleMode.CANCEL_OLD) {
-                    RequestImpl oldRequest = rpc.getSingleCallMethods().get(CacheMethod.getMethodId(m));
+                    RequestImpl oldRequest = rpc.getSingleCallMethods().get(request.getMethodId());
                     if ((rpc.getDebugFlags() & Endpoint.REQUEST_LINE_DEBUG) > 0) {
                         JudoLogger.log("Request " + oldRequest.getName() + " rejected - SingleCall.", JudoLogger.LogLevel.DEBUG);
                     }
@@ -262,21 +240,37 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
         return false;
     }
 
-    @SuppressWarnings("unchecked")
-    private MethodInfo getMethodInfo(Type returnType, Object[] args, Type[] types) {
-        for (JudoAdapter adapter : rpc.getAdapters()) {
-            if (adapter.canHandle(returnType)) {
-                return adapter.getMethodInfo(returnType, args, types);
+    private boolean registerCoalescedRequest(RequestImpl request, String name) {
+        MethodKey key = request.getMethodKey();
+        RequestImpl leader;
+        synchronized (rpc.getCoalescedRequests()) {
+            leader = rpc.getCoalescedRequests().get(key);
+            if (leader == null || !leader.addFollower(request)) {
+                request.setCoalesceKey(key);
+                rpc.getCoalescedRequests().put(key, request);
+                return false;
             }
         }
-        throw new JudoException("No adapter register for type " + returnType.toString());
+        if ((rpc.getDebugFlags() & Endpoint.REQUEST_LINE_DEBUG) > 0) {
+            JudoLogger.log("Request " + name + " attached to request " + leader.getId() + " - SingleCall.", JudoLogger.LogLevel.DEBUG);
+        }
+        rpc.startRequest(request);
+        request.invokeStart(new CacheInfo(false, 0L));
+        return true;
+    }
+
+    private MethodInfo getMethodInfo(InvocationPlan plan, Object[] args) {
+        if (plan.getAdapter() == null) {
+            throw new JudoException("No adapter register for type " + plan.getGenericReturnType().toString());
+        }
+        return plan.getAdapter().getMethodInfo(plan.getGenericReturnType(), args, plan.getGenericParameterTypes());
     }
 
     public void callBatch() {
         List<RequestImpl> batches;
         synchronized (batchRequests) {
             for (int i = batchRequests.size() - 1; i >= 0; i--) {
-                if (batchRequests.get(i).isCancelled()) {
+                if (batchRequests.get(i).isAbandoned()) {
                     batchRequests.remove(i);
                 }
             }
@@ -302,7 +296,7 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
                 for (int i = batches.size() - 1; i >= 0; i--) {
                     RequestImpl req = batches.get(i);
                     if (req.isLocalCacheable()) {
-                        CacheResult result = rpc.getMemoryCache().get(req.getMethodId(), req.getArgs(), req.getLocalCacheLifeTime(), req.getLocalCacheSize());
+                        CacheResult result = CacheAccess.get(rpc.getMemoryCache(), req.getMethodKey(), req.getLocalCacheLifeTime(), req.getLocalCacheSize());
                         LocalCache.CacheLevel cacheLevel = req.getLocalCacheLevel();
                         if (result.result) {
                             if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
@@ -317,15 +311,16 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
 
 
                         } else if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
-                            CacheMethod cacheMethod = new CacheMethod(CacheMethod.getMethodId(req.getMethod()),
-                                    req.getName(), req.getMethod().getDeclaringClass().getSimpleName(), rpc.getUrl(), cacheLevel);
-                            result = rpc.getDiskCache().get(cacheMethod, Arrays.deepToString(req.getArgs()), req.getLocalCacheLifeTime());
+                            CacheMethod cacheMethod = req.getInvocationPlan().createCacheMethod(rpc.getUrl(), cacheLevel, req.getReturnType());
+                            result = CacheAccess.get(rpc.getDiskCache(), cacheMethod, req.getMethodKey(), req.getLocalCacheLifeTime());
                             if (result.result) {
-                                rpc.getMemoryCache().put(req.getMethodId(),
-                                        req.getArgs(),
+                                CacheAccess.put(rpc.getMemoryCache(), req.getMethodKey(),
                                         result.object,
                                         req.getLocalCacheSize(),
                                         result.headers);
+                                if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
+                                    result.object = rpc.getClonner().clone(result.object);
+                                }
                                 cacheObjects.put(req.getId(), new Pair<>(req, result.object));
                                 if (req.getLocalCacheOnlyOnErrorMode().equals(LocalCache.OnlyOnError.NO)) {
                                     batches.remove(i);
@@ -363,45 +358,41 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
     }
 
     protected void receiveResponse(List<RequestImpl> batches, List<RequestResult> responses, Map<Integer, Pair<RequestImpl, Object>> cacheObjects) {
+        Map<Integer, RequestResult> results = new HashMap<>(responses.size() + cacheObjects.size());
+        for (RequestResult response : responses) {
+            if (!results.containsKey(response.id)) {
+                results.put(response.id, response);
+            } else if ((rpc.getDebugFlags() & Endpoint.RESPONSE_DEBUG) > 0) {
+                JudoLogger.log("Duplicated batch response with id " + response.id, JudoLogger.LogLevel.WARNING);
+            }
+        }
         if (rpc.isCacheEnabled()) {
-            for (int i = responses.size() - 1; i >= 0; i--) {
-                RequestResult result = responses.get(i);
-                if (cacheObjects.containsKey(result.id) && result instanceof ErrorResult) {
-                    LocalCache.OnlyOnError onlyOnErrorMode = cacheObjects.get(result.id).first.getLocalCacheOnlyOnErrorMode();
-                    if (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_ALL_ERROR) ||
-                            (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_CONNECTION_ERROR) && result.error instanceof ConnectionException)) {
-                        responses.remove(result);
-                        RequestSuccessResult res = new RequestSuccessResult(cacheObjects.get(result.id).second);
-                        res.id = result.id;
-                        responses.add(res);
-                    }
-                    cacheObjects.remove(result.id);
-                } else {
-                    cacheObjects.remove(result.id);
+            for (Map.Entry<Integer, Pair<RequestImpl, Object>> entry : cacheObjects.entrySet()) {
+                RequestImpl request = entry.getValue().first;
+                LocalCache.OnlyOnError onlyOnErrorMode = request.getLocalCacheOnlyOnErrorMode();
+                RequestResult result = results.get(entry.getKey());
+                if (onlyOnErrorMode.equals(LocalCache.OnlyOnError.NO)) {
+                    results.put(entry.getKey(), createCacheSuccessResult(entry.getKey(), entry.getValue().second));
+                    batches.add(request);
+                } else if (result instanceof ErrorResult && (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_ALL_ERROR) ||
+                        (onlyOnErrorMode.equals(LocalCache.OnlyOnError.ON_CONNECTION_ERROR) && result.error instanceof ConnectionException))) {
+                    results.put(entry.getKey(), createCacheSuccessResult(entry.getKey(), entry.getValue().second));
                 }
             }
-
-            for (Map.Entry<Integer, Pair<RequestImpl, Object>> pairs : cacheObjects.entrySet()) {
-                RequestSuccessResult res = new RequestSuccessResult(cacheObjects.get(pairs.getKey()).second);
-                res.id = pairs.getKey();
-                responses.add(res);
-                batches.add(pairs.getValue().first);
-            }
         }
-        //TODO change to map implementation
         Collections.sort(batches, new Comparator<RequestImpl>() {
             @Override
             public int compare(RequestImpl lhs, RequestImpl rhs) {
                 return lhs.getId().compareTo(rhs.getId());
             }
         });
-        Collections.sort(responses, new Comparator<RequestResult>() {
-            @Override
-            public int compare(RequestResult lhs, RequestResult rhs) {
-                return lhs.id.compareTo(rhs.id);
-            }
-        });
-        handleBatchResponse(batches, batchCallback, responses);
+        handleBatchResponse(batches, batchCallback, results);
+    }
+
+    private RequestSuccessResult createCacheSuccessResult(Integer id, Object object) {
+        RequestSuccessResult result = new RequestSuccessResult(object);
+        result.id = id;
+        return result;
     }
 
     protected int calculateTimeout(List<RequestImpl> batches) {
@@ -410,6 +401,17 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
             for (RequestImpl req : batches) {
                 timeout += req.getTimeout();
             }
+        } else if (rpc.getTimeoutMode() == Endpoint.BatchTimeoutMode.DEADLINE) {
+            Map<String, MethodStat> stats = rpc.getStats();
+            for (RequestImpl req : batches) {
+                timeout = Math.max(timeout, req.getTimeout());
+            }
+            for (RequestImpl req : batches) {
+                MethodStat stat = stats.get(req.getName());
+                if (stat != null) {
+                    timeout += stat.methodTime;
+                }
+            }
         } else {
             for (RequestImpl req : batches) {
                 timeout = Math.max(timeout, req.getTimeout());
@@ -420,98 +422,69 @@ public class RequestProxy implements InvocationHandler, AsyncResult {
 
     public void sendBatchRequest(final List<RequestImpl> batches, BatchProgressObserver progressObserver,
                                  final Map<Integer, Pair<RequestImpl, Object>> cacheObjects) {
-        final List<RequestResult> responses = Collections.synchronizedList(new ArrayList<RequestResult>(batches.size()));
-
+        List<RequestResult> responses;
         try {
             rpc.getHandler().post(new AsyncResultSender(new ArrayList<>(batches)));
             progressObserver.setMaxProgress(TimeStat.TICKS);
-            responses.addAll(rpc.getRequestConnector().callBatch(batches, progressObserver, calculateTimeout(batches)));
-            Collections.sort(responses);
-            receiveResponse(batches, responses, cacheObjects);
+            responses = rpc.getRequestConnector().callBatch(batches, progressObserver, calculateTimeout(batches));
         } catch (final JudoException e) {
+            responses = new ArrayList<>(batches.size());
             for (RequestImpl request : batches) {
                 responses.add(new ErrorResult(request.getId(), e));
             }
-            Collections.sort(responses);
-            receiveResponse(batches, responses, cacheObjects);
         }
+        receiveResponse(batches, responses, cacheObjects);
     }
 
-    protected void handleBatchResponse(List<RequestImpl> requests, Batch batch, List<RequestResult> responses) {
+    protected void handleBatchResponse(List<RequestImpl> requests, Batch batch, Map<Integer, RequestResult> responses) {
         Object[] results = new Object[requests.size()];
         JudoException ex = null;
         RequestImpl exceptionRequest = null;
-        int i = 0;
-        if (requests.size() != responses.size()) {
-            StringBuilder requestNameBuilder = new StringBuilder();
-            StringBuilder responseNameBuilder = new StringBuilder();
-            for (RequestImpl req : requests) {
-                requestNameBuilder.append(req.getName());
-                requestNameBuilder.append("\n");
-            }
-            for (RequestResult res : responses) {
-                String resultString;
-                if (res.result != null) {
-                    resultString = res.result.toString();
-                } else if (res.error != null) {
-                    resultString = res.error.toString();
-                } else {
-                    resultString = "NO RESPONSE";
+        for (int i = 0; i < requests.size(); i++) {
+            RequestImpl request = requests.get(i);
+            try {
+                RequestResult response = responses.remove(request.getId());
+                if (response == null) {
+                    throw new ParseException("Wrong server response. No response for request " +
+                            request.getName() + " with id " + request.getId() + ".");
                 }
-                responseNameBuilder.append(resultString);
-                responseNameBuilder.append("\n");
-            }
-
-            ex = new ParseException("Wrong server response. Expect " + requests.size() +
-                    " batch responses, get " + responses.size()
-                    + "\nRequests:\n" + requestNameBuilder.toString()
-                    + "\nResponse:\n" + responseNameBuilder.toString()
-            );
-        } else {
-            for (RequestImpl request : requests) {
-                try {
-                    RequestResult response = null;
+                if (response.cacheObject != null) {
+                    results[i] = response.cacheObject;
+                } else {
 
-                    if (i < responses.size()) {
-                        response = responses.get(i);
+                    if (response.error != null) {
+                        throw response.error;
                     }
 
-                    if (response != null && response.cacheObject != null) {
-                        results[i] = response.cacheObject;
-                    } else {
-
-                        if (response.error != null) {
-                            throw response.error;
-                        }
-
-                        if (!request.isVoidResult()) {
-                            results[i] = response.result;
-                            if ((rpc.isCacheEnabled() && request.isLocalCacheable())) {
-                                rpc.getMemoryCache().put(request.getMethodId(), request.getArgs(), results[i], request.getLocalCacheSize(), request.getHeaders());
-                                if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
-                                    results[i] = rpc.getClonner().clone(results[i]);
-                                }
-                                LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
+                    if (!request.isVoidResult()) {
+                        results[i] = response.result;
+                        if ((rpc.isCacheEnabled() && request.isLocalCacheable())) {
+                            Object cachedObject = results[i];
+                            CacheAccess.put(rpc.getMemoryCache(), request.getMethodKey(), cachedObject, request.getLocalCacheSize(), request.getHeaders());
+                            if (rpc.getCacheMode() == Endpoint.CacheMode.CLONE) {
+                                results[i] = rpc.getClonner().clone(cachedObject);
+                            }
+                            LocalCache.CacheLevel cacheLevel = request.getLocalCacheLevel();
 
-                                if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
-                                    CacheMethod cacheMethod = new CacheMethod(CacheMethod.getMethodId(request.getMethod()),
-                                            request.getName(), request.getMethod().getDeclaringClass().getSimpleName(), rpc.getUrl(), cacheLevel);
-                                    rpc.getDiskCache().put(cacheMethod, Arrays.deepToString(request.getArgs()), results[i], request.getLocalCacheSize(), request.getHeaders());
-                                }
+                            if (cacheLevel != LocalCache.CacheLevel.MEMORY_ONLY) {
+                                CacheMethod cacheMethod = request.getInvocationPlan().createCacheMethod(rpc.getUrl(), cacheLevel, request.getReturnType());
+                                CacheAccess.put(rpc.getDiskCache(), cacheMethod, request.getMethodKey(), cachedObject, request.getLocalCacheSize(), request.getHeaders());
                             }
                         }
                     }
-                    request.invokeCallback(results[i]);
-                } catch (JudoException e) {
-                    if (request.isBatchFatal()) {
-                        ex = e;
-                        exceptionRequest = request;
-                    }
-                    request.invokeCallbackException(e);
                 }
-                i++;
+                request.invokeCallback(results[i]);
+            } catch (JudoException e) {
+                if (request.isBatchFatal()) {
+                    ex = e;
+                    exceptionRequest = request;
+                }
+                request.invokeCallbackException(e);
             }
         }
+        if (responses.size() > 0 && (rpc.getDebugFlags() & Endpoint.RESPONSE_DEBUG) > 0) {
+            JudoLogger.log("Unexpected batch responses with ids " + responses.keySet(), JudoLogger.LogLevel.WARNING);
+        }
         if (batch != null) {
             if (ex == null) {
                 RequestImpl.invokeBatchCallback(rpc, this, results);
@@ -0,0 +1,36 @@
+package com.github.kubatatami.judonetworking.internals;
+
+/**
+ * Token bucket shared by all requests of an endpoint. Every retry takes one token and every
+ * successful request gives back a part of one, so a failing backend is not flooded with retries.
+ */
+public class RetryBudget {
+
+    private float maxTokens;
+
+    private float tokenRatio;
+
+    private float tokens;
+
+    public RetryBudget(int maxTokens, float tokenRatio) {
+        setLimits(maxTokens, tokenRatio);
+    }
+
+    public synchronized void setLimits(int maxTokens, float tokenRatio) {
+        this.maxTokens = maxTokens;
+        this.tokenRatio = tokenRatio;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        tokens = Math.min(tokens + tokenRatio, maxTokens);
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.kubatatami.judonetworking.internals;
+
+import com.github.kubatatami.judonetworking.annotations.Retry;
+import com.github.kubatatami.judonetworking.exceptions.CancelException;
+import com.github.kubatatami.judonetworking.exceptions.CircuitOpenException;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+
+import java.util.Random;
+
+public final class RetryPolicy {
+
+    private static final Random random = new Random();
+
+    private final int max;
+
+    private final int backoff;
+
+    private final float jitter;
+
+    private final Class<? extends JudoException>[] on;
+
+    public RetryPolicy(int max, int backoff, float jitter, Class<? extends JudoException>[] on) {
+        this.max = max;
+        this.backoff = backoff;
+        this.jitter = jitter;
+        this.on = on;
+    }
+
+    public static RetryPolicy fromAnnotation(Retry retry) {
+        return new RetryPolicy(retry.max(), retry.backoff(), retry.jitter(), retry.on());
+    }
+
+    /**
+     * @param retryCount Number of retries already made
+     */
+    public boolean isRetryable(JudoException e, int retryCount) {
+        if (retryCount >= max || e instanceof CancelException || e instanceof CircuitOpenException) {
+            return false;
+        }
+        for (Class<? extends JudoException> exceptionClass : on) {
+            if (exceptionClass.isInstance(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param retryCount Number of retries already made
+     */
+    public long getDelay(int retryCount) {
+        long delay = (long) backoff << Math.min(retryCount, 20);
+        double factor;
+        synchronized (random) {
+            factor = 1 + jitter * (random.nextFloat() * 2 - 1);
+        }
+        return Math.max((long) (delay * factor), 0);
+    }
+
+    public int getMax() {
+        return max;
+    }
+}
@@ -10,7 +10,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BatchTask implements Runnable {
 
@@ -26,7 +28,11 @@ public class BatchTask implements Runnable {
 
     private ProgressObserver progressObserver;
 
-    private Future future;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private boolean part;
 
     public BatchTask(EndpointImpl rpc, ProgressObserver progressObserver, Integer timeout, List<RequestImpl> requests) {
         this.rpc = rpc;
@@ -43,26 +49,67 @@ public class BatchTask implements Runnable {
         return ex;
     }
 
+    public List<RequestImpl> getRequests() {
+        return requests;
+    }
+
     @Override
     public void run() {
+        if (!started.compareAndSet(false, true)) {
+            // already run by joining thread
+            return;
+        }
         try {
-            this.response = rpc.getRequestConnector().callBatch(this.requests, progressObserver, this.timeout);
+            if (part) {
+                String requestsName = "";
+                for (RequestImpl request : requests) {
+                    requestsName += " " + request.getName();
+                }
+                this.response = rpc.getRequestConnector().callRealBatch(this.requests, progressObserver, this.timeout, requestsName);
+            } else {
+                this.response = rpc.getRequestConnector().callBatch(this.requests, progressObserver, this.timeout);
+            }
         } catch (JudoException e) {
             this.ex = e;
+        } catch (RuntimeException e) {
+            this.ex = new JudoException("Batch task exception", e);
+        } finally {
+            finished.countDown();
         }
     }
 
+    /**
+     * Queues task on executor. If no worker takes it before {@link #join()}, it runs on joining thread.
+     */
     public void execute() {
-        future = rpc.getExecutorService().submit(this);
-        for (RequestImpl request : requests) {
-            request.setFuture(future);
+        try {
+            rpc.getExecutorService().execute(this);
+        } catch (RejectedExecutionException ignored) {
+            // runs in join
         }
     }
 
+    /**
+     * Runs task as a part of an already prepared batch, skipping virtual servers and splitting.
+     */
+    public void executePart() {
+        part = true;
+        execute();
+    }
+
+    /**
+     * Runs task as a part of an already prepared batch on calling thread.
+     */
+    public void runPart() {
+        part = true;
+        run();
+    }
+
     public void join() throws JudoException {
+        run();
         try {
-            future.get();
-        } catch (Exception e) {
+            finished.await();
+        } catch (InterruptedException e) {
             throw new JudoException("Batch task exception", e);
         }
     }
@@ -0,0 +1,76 @@
+package com.github.kubatatami.judonetworking.internals.cache;
+
+/**
+ * Bloom filter of strings sized from expected entry count and target false positive rate.
+ * Not thread safe.
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+
+    private final int bitCount;
+
+    private final int hashCount;
+
+    private final int capacity;
+
+    private int count;
+
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        capacity = Math.max(expectedEntries, 1);
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        bits = new long[(bitCount + 63) / 64];
+    }
+
+    public void put(String value) {
+        int hash1 = value.hashCode();
+        int hash2 = secondHash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bitCount;
+            bits[index >>> 6] |= 1L << index;
+        }
+        count++;
+    }
+
+    /**
+     * @return False if value was never put, true if it probably was
+     */
+    public boolean mightContain(String value) {
+        int hash1 = value.hashCode();
+        int hash2 = secondHash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Expected false positive rate for current number of entries
+     */
+    public double getFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * count / bitCount), hashCount);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private static int secondHash(String value) {
+        // FNV-1a, forced odd so probes never repeat
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash | 1;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.kubatatami.judonetworking.internals.cache;
+
+import com.github.kubatatami.judonetworking.caches.DiskCache;
+import com.github.kubatatami.judonetworking.caches.KeyedDiskCache;
+import com.github.kubatatami.judonetworking.caches.KeyedMemoryCache;
+import com.github.kubatatami.judonetworking.caches.MemoryCache;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calls keyed cache methods if cache supports them, falls back to params and hash methods otherwise.
+ */
+public final class CacheAccess {
+
+    private CacheAccess() {
+    }
+
+    public static CacheResult get(MemoryCache cache, MethodKey key, int cacheLifeTime, int cacheSize) {
+        if (cache instanceof KeyedMemoryCache) {
+            return ((KeyedMemoryCache) cache).get(key, cacheLifeTime, cacheSize);
+        }
+        return cache.get(key.getMethodId(), key.getArgs(), cacheLifeTime, cacheSize);
+    }
+
+    public static void put(MemoryCache cache, MethodKey key, Object object, int cacheSize, Map<String, List<String>> headers) {
+        if (cache instanceof KeyedMemoryCache) {
+            ((KeyedMemoryCache) cache).put(key, object, cacheSize, headers);
+        } else {
+            cache.put(key.getMethodId(), key.getArgs(), object, cacheSize, headers);
+        }
+    }
+
+    public static CacheResult get(DiskCache cache, CacheMethod method, MethodKey key, int cacheLifeTime) {
+        if (cache instanceof KeyedDiskCache) {
+            return ((KeyedDiskCache) cache).get(method, key, cacheLifeTime);
+        }
+        return cache.get(method, key.getCanonicalArgs(), cacheLifeTime);
+    }
+
+    public static void put(DiskCache cache, CacheMethod method, MethodKey key, Object object, int maxSize, Map<String, List<String>> headers) {
+        if (cache instanceof KeyedDiskCache) {
+            ((KeyedDiskCache) cache).put(method, key, object, maxSize, headers);
+        } else {
+            cache.put(method, key.getCanonicalArgs(), object, maxSize, headers);
+        }
+    }
+}
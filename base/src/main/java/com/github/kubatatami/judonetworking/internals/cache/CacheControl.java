@@ -0,0 +1,132 @@
+package com.github.kubatatami.judonetworking.internals.cache;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Reads cache lifetime from Cache-Control and Expires response headers.
+ */
+public final class CacheControl {
+
+    public static final long NOT_SPECIFIED = -1;
+
+    private static final String[] REVALIDATION_HEADERS = {"Cache-Control", "Expires", "Date", "ETag", "Last-Modified", "Age"};
+
+    private CacheControl() {
+    }
+
+    /**
+     * @return Value of first header with given name (case insensitive) or null
+     */
+    public static String findHeader(Map<String, List<String>> headers, String name) {
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Updates stored response headers by freshness and validator headers of 304 response.
+     *
+     * @return New map, stored headers if there is nothing to update
+     */
+    public static Map<String, List<String>> mergeRevalidationHeaders(Map<String, List<String>> stored,
+                                                                     Map<String, List<String>> notModified) {
+        if (notModified == null || notModified.isEmpty()) {
+            return stored;
+        }
+        Map<String, List<String>> result = stored != null ? new HashMap<>(stored) : new HashMap<String, List<String>>();
+        for (String name : REVALIDATION_HEADERS) {
+            String value = findHeader(notModified, name);
+            if (value == null) {
+                continue;
+            }
+            for (Iterator<String> iterator = result.keySet().iterator(); iterator.hasNext(); ) {
+                if (name.equalsIgnoreCase(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : notModified.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    public static boolean isNoStore(Map<String, List<String>> headers) {
+        String cacheControl = findHeader(headers, "Cache-Control");
+        return cacheControl != null && cacheControl.toLowerCase(Locale.US).contains("no-store");
+    }
+
+    /**
+     * Lifetime from max-age, s-maxage (if max-age is missing), no-cache or Expires.
+     *
+     * @param responseTime Time when response was cached, used if there is no Date header
+     * @return Lifetime in ms or NOT_SPECIFIED
+     */
+    public static long getLifeTime(Map<String, List<String>> headers, long responseTime) {
+        String cacheControl = findHeader(headers, "Cache-Control");
+        if (cacheControl != null) {
+            long maxAge = NOT_SPECIFIED;
+            long sharedMaxAge = NOT_SPECIFIED;
+            for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache") || directive.equals("no-store")) {
+                    return 0;
+                } else if (directive.startsWith("max-age=")) {
+                    maxAge = parseSeconds(directive.substring("max-age=".length()));
+                } else if (directive.startsWith("s-maxage=")) {
+                    sharedMaxAge = parseSeconds(directive.substring("s-maxage=".length()));
+                }
+            }
+            if (maxAge != NOT_SPECIFIED) {
+                return maxAge;
+            } else if (sharedMaxAge != NOT_SPECIFIED) {
+                return sharedMaxAge;
+            }
+        }
+        String expires = findHeader(headers, "Expires");
+        if (expires != null) {
+            Long expiresTime = parseDate(expires);
+            if (expiresTime == null) {
+                return 0;
+            }
+            Long date = parseDate(findHeader(headers, "Date"));
+            return Math.max(expiresTime - (date != null ? date : responseTime), 0);
+        }
+        return NOT_SPECIFIED;
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Math.max(Long.parseLong(value.replace("\"", "").trim()), 0) * 1000;
+        } catch (NumberFormatException e) {
+            return NOT_SPECIFIED;
+        }
+    }
+
+    private static Long parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+}
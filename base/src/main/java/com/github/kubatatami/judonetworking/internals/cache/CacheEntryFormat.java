@@ -0,0 +1,237 @@
+package com.github.kubatatami.judonetworking.internals.cache;
+
+import com.github.kubatatami.judonetworking.caches.CacheCodec;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+import com.github.kubatatami.judonetworking.internals.stats.DiskCacheStat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary layout of disk cache entry: header (magic, version, codec id, flags, timestamp, TTL, body length, CRC32 of body)
+ * followed by body with cache key, response headers and object encoded by {@link CacheCodec}.
+ * Body above compression threshold is deflated and marked by {@link #FLAG_DEFLATE}, so both kinds of entries coexist.
+ */
+public final class CacheEntryFormat {
+
+    private static final int MAGIC = 0x4a434531;
+
+    private static final byte VERSION = 1;
+
+    private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+    public static final byte FLAG_DEFLATE = 1;
+
+    private CacheEntryFormat() {
+    }
+
+    public static void write(OutputStream stream, CacheResult result, Type type, CacheCodec codec) throws IOException {
+        write(stream, result, type, codec, 0, null);
+    }
+
+    /**
+     * @param compressionThreshold Min body size in bytes which is compressed, 0 disables compression
+     * @param stat                 Counters to update or null
+     */
+    public static void write(OutputStream stream, CacheResult result, Type type, CacheCodec codec,
+                             int compressionThreshold, DiskCacheStat stat) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyStream = new DataOutputStream(body);
+        writeString(bodyStream, result.key);
+        writeHeaders(bodyStream, result.headers);
+        codec.encode(result.object, type, bodyStream);
+        bodyStream.flush();
+        byte[] bytes = body.toByteArray();
+        byte flags = 0;
+        if (compressionThreshold > 0 && bytes.length >= compressionThreshold) {
+            long start = System.nanoTime();
+            byte[] compressed = deflate(bytes);
+            long time = (System.nanoTime() - start) / 1000;
+            if (compressed.length < bytes.length) {
+                if (stat != null) {
+                    synchronized (stat) {
+                        stat.compressedCount++;
+                        stat.uncompressedBytes += bytes.length;
+                        stat.compressedBytes += compressed.length;
+                        stat.totalCompressionTime += time;
+                    }
+                }
+                bytes = compressed;
+                flags |= FLAG_DEFLATE;
+            }
+        }
+        if (stat != null) {
+            synchronized (stat) {
+                stat.writeCount++;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        DataOutputStream os = new DataOutputStream(stream);
+        os.writeInt(MAGIC);
+        os.writeByte(VERSION);
+        os.writeByte(codec.getId());
+        os.writeByte(flags);
+        os.writeLong(result.time != null ? result.time : System.currentTimeMillis());
+        os.writeLong(CacheControl.getLifeTime(result.headers, System.currentTimeMillis()));
+        os.writeInt(bytes.length);
+        os.writeInt((int) crc.getValue());
+        os.write(bytes);
+        os.flush();
+    }
+
+    public static CacheResult read(InputStream stream, Type type, CacheCodec codec) throws IOException {
+        return read(stream, type, codec, null);
+    }
+
+    public static CacheResult read(InputStream stream, Type type, CacheCodec codec, DiskCacheStat stat) throws IOException {
+        DataInputStream is = new DataInputStream(stream);
+        if (is.readInt() != MAGIC || is.readByte() != VERSION) {
+            throw new IOException("Unknown cache entry format.");
+        }
+        if (is.readByte() != codec.getId()) {
+            throw new IOException("Cache entry written by other codec.");
+        }
+        byte flags = is.readByte();
+        long time = is.readLong();
+        is.readLong();
+        int length = is.readInt();
+        int checksum = is.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupted cache entry.");
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Cache entry checksum mismatch.");
+        }
+        if ((flags & FLAG_DEFLATE) != 0) {
+            long start = System.nanoTime();
+            bytes = inflate(bytes);
+            long inflateTime = (System.nanoTime() - start) / 1000;
+            if (stat != null) {
+                synchronized (stat) {
+                    stat.decompressedCount++;
+                    stat.totalDecompressionTime += inflateTime;
+                }
+            }
+        }
+        if (stat != null) {
+            synchronized (stat) {
+                stat.readCount++;
+            }
+        }
+        DataInputStream bodyStream = new DataInputStream(new ByteArrayInputStream(bytes));
+        CacheResult result = new CacheResult();
+        result.key = readString(bodyStream);
+        result.headers = readHeaders(bodyStream);
+        result.object = codec.decode(bodyStream, type);
+        result.time = time;
+        result.result = true;
+        return result;
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream os = new DeflaterOutputStream(result, deflater);
+            os.write(bytes);
+            os.finish();
+        } finally {
+            deflater.end();
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length * 3);
+        InflaterInputStream is = new InflaterInputStream(new ByteArrayInputStream(bytes));
+        try {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                result.write(buffer, 0, count);
+            }
+        } finally {
+            is.close();
+        }
+        return result.toByteArray();
+    }
+
+    private static void writeHeaders(DataOutputStream os, Map<String, List<String>> headers) throws IOException {
+        if (headers == null) {
+            os.writeInt(-1);
+            return;
+        }
+        os.writeInt(headers.size());
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            writeString(os, entry.getKey());
+            List<String> values = entry.getValue();
+            os.writeInt(values != null ? values.size() : 0);
+            if (values != null) {
+                for (String value : values) {
+                    writeString(os, value);
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<String>> readHeaders(DataInputStream is) throws IOException {
+        int size = is.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, List<String>> headers = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String name = readString(is);
+            int count = is.readInt();
+            List<String> values = new ArrayList<>(Math.max(count, 0));
+            for (int j = 0; j < count; j++) {
+                values.add(readString(is));
+            }
+            headers.put(name, values);
+        }
+        return headers;
+    }
+
+    private static void writeString(DataOutputStream os, String value) throws IOException {
+        if (value == null) {
+            os.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static String readString(DataInputStream is) throws IOException {
+        int length = is.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_LENGTH) {
+            throw new IOException("Corrupted cache entry.");
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
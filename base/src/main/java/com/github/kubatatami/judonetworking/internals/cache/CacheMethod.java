@@ -5,6 +5,7 @@ import com.github.kubatatami.judonetworking.annotations.RequestMethod;
 import com.github.kubatatami.judonetworking.utils.ReflectionCache;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 
 public class CacheMethod {
 
@@ -20,7 +21,14 @@ public class CacheMethod {
 
     private LocalCache.CacheLevel cacheLevel;
 
+    private Type resultType;
+
     public CacheMethod(int methodId, String methodName, String interfaceName, String url, LocalCache.CacheLevel level) {
+        this(methodId, methodName, interfaceName, url, level, null);
+    }
+
+    public CacheMethod(int methodId, String methodName, String interfaceName, String url, LocalCache.CacheLevel level, Type resultType) {
+        this.resultType = resultType;
         this.methodId = methodId;
         this.methodName = methodName;
         this.interfaceName = interfaceName;
@@ -34,6 +42,13 @@ public class CacheMethod {
         return cacheLevel;
     }
 
+    /**
+     * @return Type of cached object or null if unknown
+     */
+    public Type getResultType() {
+        return resultType;
+    }
+
     public String getUrl() {
         return url;
     }
@@ -0,0 +1,82 @@
+package com.github.kubatatami.judonetworking.internals.cache;
+
+import com.github.kubatatami.judonetworking.utils.SecurityUtils;
+
+import java.util.Arrays;
+
+/**
+ * Method id with call arguments, compared by deep equality with the hash computed once.
+ * Stable string form of arguments and its 128-bit digest (used by disk cache) are created lazily, once per key.
+ */
+public final class MethodKey {
+
+    private final int methodId;
+
+    private final Object[] args;
+
+    private final int hash;
+
+    private String canonicalArgs;
+
+    private String digest;
+
+    public MethodKey(int methodId, Object[] args) {
+        this.methodId = methodId;
+        this.args = args;
+        this.hash = 31 * methodId + Arrays.deepHashCode(args);
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    /**
+     * @return Arguments as string, stable between application runs
+     */
+    public String getCanonicalArgs() {
+        if (canonicalArgs == null) {
+            canonicalArgs = Arrays.deepToString(args);
+        }
+        return canonicalArgs;
+    }
+
+    /**
+     * @return Hex MD5 of method id and canonical arguments
+     */
+    public String getDigest() {
+        if (digest == null) {
+            digest = getDigest(methodId, getCanonicalArgs());
+        }
+        return digest;
+    }
+
+    public static String getDigest(int methodId, String canonicalArgs) {
+        return SecurityUtils.md5(methodId + ":" + canonicalArgs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodKey)) {
+            return false;
+        }
+        MethodKey other = (MethodKey) o;
+        return methodId == other.methodId && hash == other.hash && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return methodId + Arrays.deepToString(args);
+    }
+}
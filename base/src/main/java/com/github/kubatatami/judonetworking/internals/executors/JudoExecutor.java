@@ -4,12 +4,26 @@ import android.os.Build;
 import android.os.Process;
 
 import com.github.kubatatami.judonetworking.Endpoint;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.internals.requests.RequestImpl;
+import com.github.kubatatami.judonetworking.internals.stats.ExecutorStat;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
 
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Kuba on 19/05/14.
@@ -24,6 +38,12 @@ public class JudoExecutor extends ThreadPoolExecutor {
 
     protected int count;
 
+    protected final AtomicLong sequence = new AtomicLong();
+
+    protected final ExecutorStat stat = new ExecutorStat();
+
+    protected ThreadPoolExecutor overflowExecutor;
+
     protected ThreadFactory threadFactory = new ThreadFactory() {
         @Override
         public Thread newThread(final Runnable runnable) {
@@ -46,9 +66,54 @@ public class JudoExecutor extends ThreadPoolExecutor {
         }
     }
 
+    /**
+     * Bounded executor which runs at most maxConcurrency requests at once and queues the rest
+     * ordered by request priority and weight.
+     *
+     * @param maxQueueSize Max queued requests, 0 means no limit
+     * @param policy       What to do with requests over the queue limit
+     */
+    public JudoExecutor(Endpoint endpoint, int maxConcurrency, int maxQueueSize, QueuePolicy policy) {
+        super(maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS, new BoundedPriorityQueue(maxQueueSize));
+        this.endpoint = endpoint;
+        setThreadFactory(threadFactory);
+        setRejectedExecutionHandler(new QueueRejectedHandler(policy));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+            allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        if (isBounded()) {
+            return new PriorityTask<>(runnable, value, sequence.incrementAndGet());
+        }
+        return super.newTaskFor(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        if (isBounded()) {
+            return new PriorityTask<>(callable, sequence.incrementAndGet());
+        }
+        return super.newTaskFor(callable);
+    }
+
+    protected boolean isBounded() {
+        return getQueue() instanceof BoundedPriorityQueue;
+    }
+
     @Override
     protected void beforeExecute(Thread t, Runnable r) {
         super.beforeExecute(t, r);
+        if (r instanceof PriorityTask) {
+            long waitTime = System.currentTimeMillis() - ((PriorityTask) r).enqueueTime;
+            synchronized (stat) {
+                stat.executedCount++;
+                stat.totalWaitTime += waitTime;
+                stat.maxWaitTime = Math.max(stat.maxWaitTime, waitTime);
+            }
+        }
         ConnectionThread connectionThread = (ConnectionThread) t;
         connectionThread.resetCanceled();
         if ((endpoint.getDebugFlags() & Endpoint.THREAD_DEBUG) > 0) {
@@ -62,11 +127,22 @@ public class JudoExecutor extends ThreadPoolExecutor {
         if ((endpoint.getDebugFlags() & Endpoint.THREAD_DEBUG) > 0) {
             JudoLogger.log("After thread execute:" + toString(), JudoLogger.LogLevel.VERBOSE);
         }
+        if (r instanceof PriorityTask && ((PriorityTask) r).rethrow) {
+            rethrow((Future<?>) r);
+        }
     }
 
     @Override
     public void execute(Runnable command) {
+        if (!(command instanceof PriorityTask) && isBounded()) {
+            // priority queue needs comparable tasks, failures still reach uncaught exception handler
+            command = new PriorityTask<>(command, null, sequence.incrementAndGet(), true);
+        }
         super.execute(command);
+        int queueDepth = getQueue().size();
+        synchronized (stat) {
+            stat.maxQueueDepth = Math.max(stat.maxQueueDepth, queueDepth);
+        }
         if ((endpoint.getDebugFlags() & Endpoint.THREAD_DEBUG) > 0) {
             JudoLogger.log("Execute runnable" + toString(), JudoLogger.LogLevel.VERBOSE);
         }
@@ -88,6 +164,16 @@ public class JudoExecutor extends ThreadPoolExecutor {
         }
     }
 
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        synchronized (this) {
+            if (overflowExecutor != null) {
+                overflowExecutor.shutdown();
+            }
+        }
+    }
+
     public void setThreadPriority(int threadPriority) {
         this.threadPriority = threadPriority;
     }
@@ -96,6 +182,170 @@ public class JudoExecutor extends ThreadPoolExecutor {
         return threadPriority;
     }
 
+    public ExecutorStat getStat() {
+        ExecutorStat result = new ExecutorStat();
+        synchronized (stat) {
+            result.maxQueueDepth = stat.maxQueueDepth;
+            result.executedCount = stat.executedCount;
+            result.rejectedCount = stat.rejectedCount;
+            result.totalWaitTime = stat.totalWaitTime;
+            result.maxWaitTime = stat.maxWaitTime;
+        }
+        result.activeCount = getActiveCount();
+        result.queueDepth = getQueue().size();
+        return result;
+    }
+
+    public enum QueuePolicy {
+        /**
+         * Requests over the queue limit fail with JudoException.
+         */
+        REJECT,
+        /**
+         * Requests over the queue limit run one by one on a separate overflow thread.
+         */
+        OVERFLOW_THREAD
+    }
+
+    protected synchronized ThreadPoolExecutor getOverflowExecutor() {
+        if (overflowExecutor == null) {
+            overflowExecutor = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory) {
+                @Override
+                protected void beforeExecute(Thread t, Runnable r) {
+                    super.beforeExecute(t, r);
+                    ((ConnectionThread) t).resetCanceled();
+                }
+
+                @Override
+                protected void afterExecute(Runnable r, Throwable t) {
+                    super.afterExecute(r, t);
+                    if (r instanceof PriorityTask && ((PriorityTask) r).rethrow) {
+                        rethrow((Future<?>) r);
+                    }
+                }
+            };
+        }
+        return overflowExecutor;
+    }
+
+    private static void rethrow(Future<?> future) {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (Exception ignored) {
+            // canceled or interrupted
+        }
+    }
+
+    protected class QueueRejectedHandler implements RejectedExecutionHandler {
+
+        private final QueuePolicy policy;
+
+        QueueRejectedHandler(QueuePolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            synchronized (stat) {
+                stat.rejectedCount++;
+            }
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor is shut down.");
+            }
+            if (policy == QueuePolicy.OVERFLOW_THREAD) {
+                getOverflowExecutor().execute(runnable);
+            } else if (runnable instanceof PriorityTask && ((PriorityTask) runnable).request != null) {
+                ((PriorityTask) runnable).cancel(false);
+                ((PriorityTask) runnable).request.invokeCallbackException(new JudoException("Request queue is full."));
+            } else {
+                throw new RejectedExecutionException("Request queue is full.");
+            }
+        }
+    }
+
+    protected static class PriorityTask<V> extends FutureTask<V> implements Comparable<PriorityTask<?>> {
+
+        final RequestImpl request;
+
+        final boolean highPriority;
+
+        final boolean lowPriority;
+
+        final long weight;
+
+        final long sequence;
+
+        final long enqueueTime = System.currentTimeMillis();
+
+        final boolean rethrow;
+
+        PriorityTask(Runnable runnable, V result, long sequence) {
+            this(runnable, result, sequence, false);
+        }
+
+        PriorityTask(Runnable runnable, V result, long sequence, boolean rethrow) {
+            super(runnable, result);
+            this.rethrow = rethrow;
+            this.request = runnable instanceof RequestImpl ? (RequestImpl) runnable : null;
+            this.highPriority = request != null && request.isHighPriority();
+            this.lowPriority = request != null && request.isCacheRefresh();
+            this.weight = request != null ? request.getLoadedWeight() : 0;
+            this.sequence = sequence;
+        }
+
+        PriorityTask(Callable<V> callable, long sequence) {
+            super(callable);
+            this.rethrow = false;
+            this.request = null;
+            this.highPriority = false;
+            this.lowPriority = false;
+            this.weight = 0;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PriorityTask<?> another) {
+            if (highPriority != another.highPriority) {
+                return highPriority ? -1 : 1;
+            } else if (lowPriority != another.lowPriority) {
+                return lowPriority ? 1 : -1;
+            } else if (weight != another.weight) {
+                return Long.valueOf(another.weight).compareTo(weight);
+            } else {
+                return Long.valueOf(sequence).compareTo(another.sequence);
+            }
+        }
+    }
+
+    protected static class BoundedPriorityQueue extends PriorityBlockingQueue<Runnable> {
+
+        private static final long serialVersionUID = -3349432816395221287L;
+
+        private final int capacity;
+
+        BoundedPriorityQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            synchronized (this) {
+                if (capacity > 0 && size() >= capacity) {
+                    return false;
+                }
+                return super.offer(runnable);
+            }
+        }
+    }
+
 
     public static class ConnectionThread extends Thread {
 
@@ -0,0 +1,47 @@
+package com.github.kubatatami.judonetworking.internals.requests;
+
+import com.github.kubatatami.judonetworking.AsyncResult;
+import com.github.kubatatami.judonetworking.CacheInfo;
+import com.github.kubatatami.judonetworking.callbacks.Callback;
+import com.github.kubatatami.judonetworking.exceptions.JudoException;
+
+/**
+ * Passes result of a stale cache refresh to the callback of original request,
+ * which already got onStart with the stale data.
+ */
+public class CacheRefreshCallback<T> implements Callback<T> {
+
+    private final Callback<T> callback;
+
+    public CacheRefreshCallback(Callback<T> callback) {
+        this.callback = callback;
+    }
+
+    public Callback<T> getCallback() {
+        return callback;
+    }
+
+    @Override
+    public void onStart(CacheInfo cacheInfo, AsyncResult asyncResult) {
+    }
+
+    @Override
+    public void onProgress(int progress) {
+        callback.onProgress(progress);
+    }
+
+    @Override
+    public void onSuccess(T result) {
+        callback.onSuccess(result);
+    }
+
+    @Override
+    public void onError(JudoException e) {
+        callback.onError(e);
+    }
+
+    @Override
+    public void onFinish() {
+        callback.onFinish();
+    }
+}
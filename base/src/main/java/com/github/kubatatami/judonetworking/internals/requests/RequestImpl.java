@@ -4,29 +4,34 @@ import com.github.kubatatami.judonetworking.AsyncResult;
 import com.github.kubatatami.judonetworking.CacheInfo;
 import com.github.kubatatami.judonetworking.Endpoint;
 import com.github.kubatatami.judonetworking.Request;
-import com.github.kubatatami.judonetworking.annotations.ApiKeyRequired;
-import com.github.kubatatami.judonetworking.annotations.Delay;
+import com.github.kubatatami.judonetworking.annotations.Hedge;
 import com.github.kubatatami.judonetworking.annotations.LocalCache;
-import com.github.kubatatami.judonetworking.annotations.RejectOnMonkeyTest;
 import com.github.kubatatami.judonetworking.annotations.RequestMethod;
 import com.github.kubatatami.judonetworking.annotations.SingleCall;
 import com.github.kubatatami.judonetworking.callbacks.Callback;
 import com.github.kubatatami.judonetworking.callbacks.DefaultCallback;
+import com.github.kubatatami.judonetworking.controllers.ProtocolController;
 import com.github.kubatatami.judonetworking.exceptions.CancelException;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
 import com.github.kubatatami.judonetworking.internals.AsyncResultSender;
 import com.github.kubatatami.judonetworking.internals.EndpointImpl;
+import com.github.kubatatami.judonetworking.internals.InvocationPlan;
 import com.github.kubatatami.judonetworking.internals.ProgressObserver;
 import com.github.kubatatami.judonetworking.internals.RequestProxy;
-import com.github.kubatatami.judonetworking.internals.cache.CacheMethod;
+import com.github.kubatatami.judonetworking.internals.RetryPolicy;
+import com.github.kubatatami.judonetworking.internals.cache.MethodKey;
+import com.github.kubatatami.judonetworking.internals.results.CacheResult;
+import com.github.kubatatami.judonetworking.internals.stats.MethodStat;
 import com.github.kubatatami.judonetworking.internals.stats.TimeStat;
 import com.github.kubatatami.judonetworking.logs.ErrorLogger;
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
-import com.github.kubatatami.judonetworking.utils.ReflectionCache;
+import com.github.kubatatami.judonetworking.transports.TransportLayer;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -57,7 +62,7 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
 
     private Method method;
 
-    private Class<?> apiInterface;
+    private InvocationPlan plan;
 
     private boolean batchFatal = true;
 
@@ -71,6 +76,22 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
 
     private Future<?> future;
 
+    private TransportLayer.AsyncCall asyncCall;
+
+    private int retryCount;
+
+    private ProtocolController.RequestInfo requestInfo;
+
+    private MethodKey coalesceKey;
+
+    private MethodKey methodKey;
+
+    private boolean cacheRefresh;
+
+    private CacheResult revalidationCache;
+
+    private List<RequestImpl> followers;
+
     private Map<String, List<String>> headers;
 
     private long startTimeMillis;
@@ -87,7 +108,7 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
         this.timeout = timeout;
         this.method = method;
         if (method != null) {
-            this.apiInterface = method.getDeclaringClass();
+            this.plan = rpc.getInvocationPlan(method);
         }
         this.rpc = rpc;
         this.ann = ann;
@@ -101,26 +122,35 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
     @Override
     public void run() {
         try {
-            if (!cancelled) {
+            if (!isAbandoned()) {
                 Object result = rpc.getRequestConnector().call(this);
                 invokeCallback(result);
             }
-        } catch (final JudoException e) {
-            invokeCallbackException(e);
-            if (rpc.getErrorLoggers().size() != 0 && !(e instanceof CancelException) && !cancelled) {
-                rpc.getHandler().post(new Runnable() {
-                    @Override
-                    public void run() {
-                        for (ErrorLogger errorLogger : rpc.getErrorLoggers()) {
-                            errorLogger.onError(e, RequestImpl.this);
-                        }
-                    }
-                });
+        } catch (JudoException e) {
+            if (!rpc.getRequestConnector().scheduleRetry(this, e)) {
+                handleException(e);
             }
         }
     }
 
+    public void handleException(final JudoException e) {
+        invokeCallbackException(e);
+        if (rpc.getErrorLoggers().size() != 0 && !(e instanceof CancelException) && !cancelled) {
+            rpc.getHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ErrorLogger errorLogger : rpc.getErrorLoggers()) {
+                        errorLogger.onError(e, RequestImpl.this);
+                    }
+                }
+            });
+        }
+    }
+
     public void invokeStart(CacheInfo cacheInfo) {
+        if (retryCount > 0) {
+            return;
+        }
         startTimeMillis = System.currentTimeMillis();
         if (callback != null) {
             rpc.getHandler().post(new AsyncResultSender(this, cacheInfo));
@@ -129,12 +159,105 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
 
     public void invokeCallbackException(JudoException e) {
         calcTime();
+        finishCacheRefresh();
         rpc.getHandler().post(new AsyncResultSender(this, e));
+        for (RequestImpl follower : detachFollowers()) {
+            follower.invokeCallbackException(e);
+        }
     }
 
     public void invokeCallback(Object result) {
         calcTime();
+        finishCacheRefresh();
         rpc.getHandler().post(new AsyncResultSender(this, result));
+        for (RequestImpl follower : detachFollowers()) {
+            // in clone mode every caller gets its own copy of shared result
+            follower.invokeCallback(result != null && rpc.getCacheMode() == Endpoint.CacheMode.CLONE ? rpc.getClonner().clone(result) : result);
+        }
+    }
+
+    /**
+     * Creates copy of this request which bypasses local cache to refresh stale data.
+     */
+    public RequestImpl createCacheRefresh(boolean deliverResult) {
+        RequestImpl refresh = new RequestImpl(rpc, method, name, ann, args, returnType, timeout,
+                deliverResult ? new CacheRefreshCallback<>(callback) : null, additionalControllerData);
+        refresh.customUrl = customUrl;
+        refresh.isApiKeyRequired = isApiKeyRequired;
+        refresh.cacheRefresh = true;
+        return refresh;
+    }
+
+    public boolean isCacheRefresh() {
+        return cacheRefresh;
+    }
+
+    /**
+     * @return Cached data which can be reused if server responds with 304
+     */
+    public CacheResult getRevalidationCache() {
+        return revalidationCache;
+    }
+
+    public void setRevalidationCache(CacheResult revalidationCache) {
+        this.revalidationCache = revalidationCache;
+    }
+
+    private void finishCacheRefresh() {
+        if (cacheRefresh) {
+            rpc.getCacheRefreshes().remove(getMethodKey());
+        }
+    }
+
+    public void setCoalesceKey(MethodKey coalesceKey) {
+        this.coalesceKey = coalesceKey;
+    }
+
+    public boolean addFollower(RequestImpl follower) {
+        if (done || (cancelled && !hasActiveFollowers())) {
+            return false;
+        }
+        if (followers == null) {
+            followers = new ArrayList<>();
+        }
+        followers.add(follower);
+        return true;
+    }
+
+    private boolean hasActiveFollowers() {
+        if (coalesceKey != null) {
+            synchronized (rpc.getCoalescedRequests()) {
+                if (followers != null) {
+                    for (RequestImpl follower : followers) {
+                        if (!follower.isCancelled()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<RequestImpl> detachFollowers() {
+        if (coalesceKey == null) {
+            return Collections.emptyList();
+        }
+        synchronized (rpc.getCoalescedRequests()) {
+            if (rpc.getCoalescedRequests().get(coalesceKey) == this) {
+                rpc.getCoalescedRequests().remove(coalesceKey);
+            }
+            List<RequestImpl> result = followers != null ? followers : Collections.<RequestImpl>emptyList();
+            followers = null;
+            return result;
+        }
+    }
+
+    /**
+     * @return True if request is cancelled and no coalesced request waits for its result.
+     */
+    public boolean isAbandoned() {
+        return cancelled && !hasActiveFollowers();
     }
 
     private void calcTime() {
@@ -195,7 +318,11 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
 
     @Override
     public int getMethodId() {
-        return CacheMethod.getMethodId(method);
+        return plan != null ? plan.getMethodId() : 0;
+    }
+
+    public InvocationPlan getInvocationPlan() {
+        return plan;
     }
 
     @Override
@@ -210,12 +337,8 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
 
     @Override
     public boolean isApiKeyRequired() {
-        if (method != null) {
-            ApiKeyRequired ann = ReflectionCache.getAnnotation(method, ApiKeyRequired.class);
-            if (ann == null) {
-                ann = ReflectionCache.getAnnotation(apiInterface, ApiKeyRequired.class);
-            }
-            return ann != null && ann.enabled();
+        if (plan != null) {
+            return plan.isApiKeyRequired();
         } else {
             return isApiKeyRequired;
         }
@@ -224,6 +347,17 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
     @Override
     public void setArgs(Object[] args) {
         this.args = args;
+        this.methodKey = null;
+    }
+
+    /**
+     * @return Key of method and arguments, created once per request
+     */
+    public MethodKey getMethodKey() {
+        if (methodKey == null) {
+            methodKey = new MethodKey(getMethodId(), args);
+        }
+        return methodKey;
     }
 
     @Override
@@ -241,40 +375,42 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
     }
 
     public LocalCache getLocalCache() {
-        if (method != null) {
-            LocalCache ann = ReflectionCache.getAnnotationInherited(method, LocalCache.class);
-            if (ann != null && !ann.enabled()) {
-                ann = null;
-            }
-            return ann;
-        } else {
-            return null;
-        }
+        return plan != null ? plan.getLocalCache() : null;
     }
 
     public int getDelay() {
-        if (method != null) {
-            Delay ann = ReflectionCache.getAnnotationInherited(method, Delay.class);
-            if (ann != null && !ann.enabled()) {
-                ann = null;
-            }
-            return ann != null ? ann.value() : 0;
-        } else {
-            return 0;
-        }
+        return plan != null ? plan.getDelay() : 0;
     }
 
-
     public SingleCall getSingleCall() {
-        if (method != null) {
-            SingleCall ann = ReflectionCache.getAnnotationInherited(method, SingleCall.class);
-            if (ann != null && !ann.enabled()) {
-                ann = null;
-            }
-            return ann;
-        } else {
+        return plan != null ? plan.getSingleCall() : null;
+    }
+
+    public Hedge getHedge() {
+        return plan != null ? plan.getHedge() : null;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        if (plan != null && plan.isRetryDisabled()) {
             return null;
         }
+        return plan != null && plan.getRetryPolicy() != null ? plan.getRetryPolicy() : rpc.getDefaultRetryPolicy();
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void incrementRetryCount() {
+        retryCount++;
+    }
+
+    public ProtocolController.RequestInfo getRequestInfo() {
+        return requestInfo;
+    }
+
+    public void setRequestInfo(ProtocolController.RequestInfo requestInfo) {
+        this.requestInfo = requestInfo;
     }
 
     public int getLocalCacheLifeTime() {
@@ -286,6 +422,10 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
         }
     }
 
+    public int getLocalCacheStaleTime() {
+        return getLocalCache().staleWhileRevalidate();
+    }
+
     public boolean isLocalCacheable() {
         return getLocalCache() != null;
     }
@@ -321,9 +461,33 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
         }
     }
 
+    public boolean isServerCacheControl() {
+        LocalCache localCache = getLocalCache();
+        if (localCache == null) {
+            return false;
+        }
+        LocalCache.ServerCacheControl serverCacheControl = localCache.serverCacheControl();
+        if (serverCacheControl.equals(LocalCache.ServerCacheControl.DEFAULT)) {
+            serverCacheControl = rpc.getDefaultMethodServerCacheControl();
+        }
+        return serverCacheControl.equals(LocalCache.ServerCacheControl.HONOR);
+    }
+
     public long getWeight() {
-        if (rpc.getStats().containsKey(name)) {
-            return Math.max(rpc.getStats().get(name).methodTime, 1);
+        return getWeight(rpc.getStats());
+    }
+
+    /**
+     * Same as getWeight but never loads stats file, safe to call on API caller thread.
+     */
+    public long getLoadedWeight() {
+        return getWeight(rpc.getTimeProfilerStats());
+    }
+
+    private long getWeight(Map<String, MethodStat> stats) {
+        MethodStat stat = stats != null ? stats.get(name) : null;
+        if (stat != null) {
+            return Math.max(stat.methodTime, 1);
         } else {
             return timeout / 2;
         }
@@ -416,6 +580,7 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
             return;
         }
         this.cancelled = true;
+        finishCacheRefresh();
         synchronized (this) {
             notifyAll();
         }
@@ -425,11 +590,16 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
         if (running) {
             running = false;
             synchronized (rpc.getSingleCallMethods()) {
-                rpc.getSingleCallMethods().remove(CacheMethod.getMethodId(method));
+                rpc.getSingleCallMethods().remove(getMethodId());
             }
 
-            if (future != null) {
-                future.cancel(true);
+            if (!hasActiveFollowers()) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+                if (asyncCall != null) {
+                    asyncCall.cancel();
+                }
             }
             rpc.getHandler().post(new Runnable() {
                 @Override
@@ -438,6 +608,9 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
                 }
             });
         }
+        if (!hasActiveFollowers()) {
+            detachFollowers();
+        }
         rpc.stopRequest(RequestImpl.this);
     }
 
@@ -507,13 +680,11 @@ public class RequestImpl implements Runnable, Comparable<RequestImpl>, ProgressO
         this.future = future;
     }
 
+    public void setAsyncCall(TransportLayer.AsyncCall asyncCall) {
+        this.asyncCall = asyncCall;
+    }
+
     public boolean isRejectOnMonkeyTest() {
-        if (method != null) {
-            RejectOnMonkeyTest ann = ReflectionCache.getAnnotationInherited(method, RejectOnMonkeyTest.class);
-            if (ann != null) {
-                return ann.enabled();
-            }
-        }
-        return false;
+        return plan != null && plan.isRejectOnMonkeyTest();
     }
 }
\ No newline at end of file
@@ -16,6 +16,13 @@ public class CacheResult implements Serializable {
 
     public Map<String, List<String>> headers;
 
+    public boolean stale;
+
+    /**
+     * Canonical arguments of cached request, used to detect digest collisions.
+     */
+    public String key;
+
     public CacheResult() {
 
     }
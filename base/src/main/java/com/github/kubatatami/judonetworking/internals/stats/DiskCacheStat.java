@@ -0,0 +1,59 @@
+package com.github.kubatatami.judonetworking.internals.stats;
+
+/**
+ * Snapshot of disk cache entry counters.
+ */
+public class DiskCacheStat {
+
+    public long writeCount = 0;
+
+    public long readCount = 0;
+
+    public long compressedCount = 0;
+
+    public long uncompressedBytes = 0;
+
+    public long compressedBytes = 0;
+
+    public long totalCompressionTime = 0;
+
+    public long decompressedCount = 0;
+
+    public long totalDecompressionTime = 0;
+
+    /**
+     * @return Compressed to original size ratio of compressed entries, 1 if nothing was compressed
+     */
+    public float getCompressionRatio() {
+        return uncompressedBytes > 0 ? (float) compressedBytes / uncompressedBytes : 1;
+    }
+
+    public long getAverageCompressionTime() {
+        return compressedCount > 0 ? totalCompressionTime / compressedCount : 0;
+    }
+
+    public long getAverageDecompressionTime() {
+        return decompressedCount > 0 ? totalDecompressionTime / decompressedCount : 0;
+    }
+
+    public void copyTo(DiskCacheStat result) {
+        result.writeCount = writeCount;
+        result.readCount = readCount;
+        result.compressedCount = compressedCount;
+        result.uncompressedBytes = uncompressedBytes;
+        result.compressedBytes = compressedBytes;
+        result.totalCompressionTime = totalCompressionTime;
+        result.decompressedCount = decompressedCount;
+        result.totalDecompressionTime = totalDecompressionTime;
+    }
+
+    @Override
+    public String toString() {
+        return "writeCount=" + writeCount +
+                ", readCount=" + readCount +
+                ", compressedCount=" + compressedCount +
+                ", compressionRatio=" + getCompressionRatio() +
+                ", averageCompressionTime=" + getAverageCompressionTime() +
+                ", averageDecompressionTime=" + getAverageDecompressionTime();
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.kubatatami.judonetworking.internals.stats;
+
+/**
+ * Snapshot of request executor queue counters.
+ */
+public class ExecutorStat {
+
+    public int activeCount = 0;
+
+    public int queueDepth = 0;
+
+    public int maxQueueDepth = 0;
+
+    public long executedCount = 0;
+
+    public long rejectedCount = 0;
+
+    public long totalWaitTime = 0;
+
+    public long maxWaitTime = 0;
+
+    public long getAverageWaitTime() {
+        return executedCount > 0 ? totalWaitTime / executedCount : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "activeCount=" + activeCount +
+                ", queueDepth=" + queueDepth +
+                ", maxQueueDepth=" + maxQueueDepth +
+                ", executedCount=" + executedCount +
+                ", rejectedCount=" + rejectedCount +
+                ", averageWaitTime=" + getAverageWaitTime() +
+                ", maxWaitTime=" + maxWaitTime;
+    }
+}
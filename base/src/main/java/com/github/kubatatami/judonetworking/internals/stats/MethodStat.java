@@ -20,6 +20,60 @@ public class MethodStat implements Serializable {
 
     public long errors = 0;
 
+    /**
+     * Request counts in exponential time buckets, bucket i holds times up to 1.5^i ms.
+     */
+    public long[] latencyHistogram;
+
+    private static final int LATENCY_BUCKETS = 40;
+
+    private static final double LATENCY_BUCKET_BASE = Math.log(1.5);
+
+    private static final long LATENCY_MAX_SAMPLES = 10000;
+
+    public synchronized void addLatency(long time) {
+        if (latencyHistogram == null) {
+            latencyHistogram = new long[LATENCY_BUCKETS];
+        }
+        int bucket = time <= 1 ? 0 : (int) Math.ceil(Math.log(time) / LATENCY_BUCKET_BASE);
+        latencyHistogram[Math.min(bucket, LATENCY_BUCKETS - 1)]++;
+        if (getLatencySamples() > LATENCY_MAX_SAMPLES) {
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                latencyHistogram[i] /= 2;
+            }
+        }
+    }
+
+    public synchronized long getLatencySamples() {
+        long samples = 0;
+        if (latencyHistogram != null) {
+            for (long count : latencyHistogram) {
+                samples += count;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return Upper bound of the time bucket containing given percentile or -1 if there are no samples
+     */
+    public synchronized long getLatencyPercentile(float percentile) {
+        long samples = getLatencySamples();
+        if (samples == 0) {
+            return -1;
+        }
+        long threshold = (long) Math.ceil(samples * percentile / 100);
+        long count = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            count += latencyHistogram[i];
+            if (count >= threshold) {
+                return (long) Math.pow(1.5, i);
+            }
+        }
+        return (long) Math.pow(1.5, LATENCY_BUCKETS - 1);
+    }
+
     @Override
     public String toString() {
         return "requestCount=" + requestCount +
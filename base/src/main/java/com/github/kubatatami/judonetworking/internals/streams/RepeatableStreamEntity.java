@@ -0,0 +1,13 @@
+package com.github.kubatatami.judonetworking.internals.streams;
+
+import java.io.IOException;
+
+/**
+ * Entity which can be written again after reset, so a retried request doesn't need to serialize its body again.
+ */
+public interface RepeatableStreamEntity extends StreamEntity {
+
+    boolean isRepeatable();
+
+    void reset() throws IOException;
+}
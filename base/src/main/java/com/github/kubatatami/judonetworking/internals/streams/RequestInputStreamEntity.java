@@ -34,10 +34,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
- * A streamed, non-repeatable entity that obtains its content from
- * an {@link InputStream}.
+ * A streamed entity that obtains its content from an {@link InputStream}.
+ * It is repeatable if the stream supports mark/reset.
  */
-public class RequestInputStreamEntity implements StreamEntity {
+public class RequestInputStreamEntity implements RepeatableStreamEntity {
 
     private final InputStream content;
 
@@ -56,6 +56,9 @@ public class RequestInputStreamEntity implements StreamEntity {
         this.content = instream;
         this.length = length;
         this.binary = binary;
+        if (instream.markSupported()) {
+            instream.mark(length > 0 && length < Integer.MAX_VALUE ? (int) length : Integer.MAX_VALUE);
+        }
 
     }
 
@@ -72,6 +75,16 @@ public class RequestInputStreamEntity implements StreamEntity {
         FileUtils.copyStreamOrCountBytes(outstream, content, length);
     }
 
+    @Override
+    public boolean isRepeatable() {
+        return content.markSupported();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        content.reset();
+    }
+
     @Override
     public void close() throws IOException {
         this.content.close();
@@ -0,0 +1,262 @@
+package com.github.kubatatami.judonetworking.transports;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AIMD limit of requests in flight per host. The limit grows by one per window of successful
+ * requests while response latency stays close to the lowest observed one, and is cut when latency
+ * grows (requests start to queue) or requests fail.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double QUEUEING_LATENCY_RATIO = 2.0;
+
+    private static final double LATENCY_DECREASE = 0.9;
+
+    private static final double ERROR_DECREASE = 0.7;
+
+    private static final double MIN_LATENCY_DRIFT = 0.01;
+
+    private static final double AVERAGE_LATENCY_WEIGHT = 0.1;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final Map<String, HostLimit> hosts = new HashMap<>();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.initialLimit = initialLimit;
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+    }
+
+    /**
+     * Blocks until a request to the host of given url may be sent.
+     */
+    public Permit acquire(String url) throws InterruptedException {
+        try {
+            return acquire(url, 0);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Blocks until a request to the host of given url may be sent.
+     *
+     * @param timeout Max wait time in ms, 0 means no limit
+     * @throws TimeoutException If no permit was released in given time
+     */
+    public Permit acquire(String url, long timeout) throws InterruptedException, TimeoutException {
+        HostLimit hostLimit = getHostLimit(getHost(url));
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (hostLimit) {
+            while (hostLimit.inFlight >= (int) hostLimit.limit) {
+                if (timeout <= 0) {
+                    hostLimit.wait();
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("No free slot for " + getHost(url) + " in " + timeout + "ms.");
+                    }
+                    hostLimit.wait(remaining);
+                }
+            }
+            hostLimit.inFlight++;
+        }
+        return new Permit(hostLimit);
+    }
+
+    /**
+     * Passes permit to the listener as soon as a request to the host of given url may be sent.
+     * The listener is called on the current thread or on the thread which released a permit.
+     */
+    public void acquireAsync(String url, PermitListener listener) {
+        HostLimit hostLimit = getHostLimit(getHost(url));
+        synchronized (hostLimit) {
+            if (hostLimit.inFlight >= (int) hostLimit.limit) {
+                hostLimit.waiting.add(listener);
+                return;
+            }
+            hostLimit.inFlight++;
+        }
+        listener.onPermit(new Permit(hostLimit));
+    }
+
+    public int getLimit(String host) {
+        HostLimit hostLimit = findHostLimit(host);
+        if (hostLimit == null) {
+            return initialLimit;
+        }
+        synchronized (hostLimit) {
+            return (int) hostLimit.limit;
+        }
+    }
+
+    /**
+     * @return Smoothed time in ms from sending a request to receiving response headers, 0 if unknown
+     */
+    public long getLatency(String host) {
+        HostLimit hostLimit = findHostLimit(host);
+        if (hostLimit == null) {
+            return 0;
+        }
+        synchronized (hostLimit) {
+            return (long) hostLimit.averageLatency;
+        }
+    }
+
+    public int getInFlight(String host) {
+        HostLimit hostLimit = findHostLimit(host);
+        if (hostLimit == null) {
+            return 0;
+        }
+        synchronized (hostLimit) {
+            return hostLimit.inFlight;
+        }
+    }
+
+    public Set<String> getHosts() {
+        synchronized (hosts) {
+            return new HashSet<>(hosts.keySet());
+        }
+    }
+
+    private HostLimit findHostLimit(String host) {
+        synchronized (hosts) {
+            return hosts.get(host);
+        }
+    }
+
+    private HostLimit getHostLimit(String host) {
+        synchronized (hosts) {
+            HostLimit hostLimit = hosts.get(host);
+            if (hostLimit == null) {
+                hostLimit = new HostLimit(Math.min(Math.max(initialLimit, minLimit), maxLimit));
+                hosts.put(host, hostLimit);
+            }
+            return hostLimit;
+        }
+    }
+
+    static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    public interface PermitListener {
+
+        void onPermit(Permit permit);
+    }
+
+    public class Permit {
+
+        private final HostLimit hostLimit;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private long latency = -1;
+
+        private boolean released;
+
+        Permit(HostLimit hostLimit) {
+            this.hostLimit = hostLimit;
+        }
+
+        /**
+         * Marks the moment response headers arrived.
+         */
+        public void onResponse() {
+            if (latency < 0) {
+                latency = System.currentTimeMillis() - startTime;
+            }
+        }
+
+        /**
+         * Releases the permit and adjusts the limit.
+         *
+         * @param success False if the request failed because of the connection or server overload
+         */
+        public void release(boolean success) {
+            List<PermitListener> next = new ArrayList<>();
+            synchronized (hostLimit) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                hostLimit.update(success, latency, minLimit, maxLimit);
+                hostLimit.inFlight--;
+                while (hostLimit.inFlight < (int) hostLimit.limit && !hostLimit.waiting.isEmpty()) {
+                    next.add(hostLimit.waiting.poll());
+                    hostLimit.inFlight++;
+                }
+                hostLimit.notifyAll();
+            }
+            for (PermitListener listener : next) {
+                listener.onPermit(new Permit(hostLimit));
+            }
+        }
+
+        /**
+         * Releases the permit without affecting the limit, e.g. when the request was cancelled.
+         */
+        public void cancel() {
+            latency = -1;
+            release(true);
+        }
+    }
+
+    static class HostLimit {
+
+        double limit;
+
+        int inFlight;
+
+        double minLatency = -1;
+
+        double averageLatency;
+
+        final Queue<PermitListener> waiting = new ArrayDeque<>();
+
+        HostLimit(int limit) {
+            this.limit = limit;
+        }
+
+        void update(boolean success, long latency, int minLimit, int maxLimit) {
+            if (!success) {
+                limit = Math.max(minLimit, limit * ERROR_DECREASE);
+                return;
+            }
+            if (latency < 0) {
+                return;
+            }
+            if (minLatency < 0 || latency < minLatency) {
+                minLatency = latency;
+            } else {
+                minLatency += (latency - minLatency) * MIN_LATENCY_DRIFT;
+            }
+            averageLatency = averageLatency == 0 ? latency : averageLatency + (latency - averageLatency) * AVERAGE_LATENCY_WEIGHT;
+            if (latency > Math.max(minLatency, 1) * QUEUEING_LATENCY_RATIO) {
+                limit = Math.max(minLimit, limit * LATENCY_DECREASE);
+            } else if (inFlight >= limit / 2) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+}
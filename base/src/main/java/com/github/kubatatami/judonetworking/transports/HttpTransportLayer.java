@@ -3,12 +3,15 @@ package com.github.kubatatami.judonetworking.transports;
 import com.github.kubatatami.judonetworking.controllers.ProtocolController;
 import com.github.kubatatami.judonetworking.exceptions.HttpException;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
+import com.github.kubatatami.judonetworking.exceptions.NotModifiedException;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Kuba on 16/11/14.
@@ -42,6 +45,14 @@ public abstract class HttpTransportLayer extends TransportLayer {
 
 
     protected void handleHttpException(ProtocolController protocolController, int code, String message, String body) throws JudoException {
+        handleHttpException(protocolController, code, message, body, null);
+    }
+
+    protected void handleHttpException(ProtocolController protocolController, int code, String message, String body,
+                                       Map<String, List<String>> headers) throws JudoException {
+        if (code == NotModifiedException.CODE) {
+            throw new NotModifiedException(message + "(" + code + ") ", headers);
+        }
         protocolController.parseError(code, message);
         throw new HttpException(message + "(" + code + ") ", body, code);
     }
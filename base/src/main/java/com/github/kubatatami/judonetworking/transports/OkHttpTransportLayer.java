@@ -6,6 +6,7 @@ import com.github.kubatatami.judonetworking.Endpoint;
 import com.github.kubatatami.judonetworking.controllers.ProtocolController;
 import com.github.kubatatami.judonetworking.exceptions.CancelException;
 import com.github.kubatatami.judonetworking.exceptions.ConnectionException;
+import com.github.kubatatami.judonetworking.exceptions.HttpException;
 import com.github.kubatatami.judonetworking.exceptions.JudoException;
 import com.github.kubatatami.judonetworking.internals.executors.JudoExecutor;
 import com.github.kubatatami.judonetworking.internals.stats.TimeStat;
@@ -13,6 +14,7 @@ import com.github.kubatatami.judonetworking.internals.streams.RequestOutputStrea
 import com.github.kubatatami.judonetworking.logs.JudoLogger;
 import com.github.kubatatami.judonetworking.utils.ReflectionCache;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -23,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -82,26 +85,38 @@ public class OkHttpTransportLayer extends HttpTransportLayer {
 
     protected Response sendRequest(OkHttpClient client, Request.Builder builder, final ProtocolController.RequestInfo requestInfo,
                                    final TimeStat timeStat, Method method, int debugFlags) throws Exception {
-        RequestBody requestBody = null;
-        String methodName = "GET";
         try {
-            if (requestInfo.entity != null) {
-                methodName = "POST";
-                requestBody = createRequestBody(requestInfo, timeStat);
-            }
-            logRequest(requestInfo, debugFlags, requestBody);
-            methodName = changeHttpMethod(method, methodName);
-            requestBody = createEmptyRequestBody(requestInfo, requestBody, methodName);
-            final Call call = client.newCall(builder.method(methodName, requestBody).build());
+            final Call call = createCall(client, builder, requestInfo, timeStat, method, debugFlags);
             attachCanceller(call);
             if (experimentalAsync) {
-                return handleResponseExperimental(timeStat, requestBody, call);
+                return handleResponseExperimental(timeStat, call.request().body(), call);
             } else {
-                return handleResponse(timeStat, requestBody, call);
+                return handleResponse(timeStat, call.request().body(), call);
             }
         } finally {
-            if (requestInfo.entity != null) {
+            closeEntity(requestInfo);
+        }
+    }
+
+    protected Call createCall(OkHttpClient client, Request.Builder builder, final ProtocolController.RequestInfo requestInfo,
+                              final TimeStat timeStat, Method method, int debugFlags) throws IOException {
+        RequestBody requestBody = null;
+        String methodName = "GET";
+        if (requestInfo.entity != null) {
+            methodName = "POST";
+            requestBody = createRequestBody(requestInfo, timeStat);
+        }
+        logRequest(requestInfo, debugFlags, requestBody);
+        methodName = changeHttpMethod(method, methodName);
+        requestBody = createEmptyRequestBody(requestInfo, requestBody, methodName);
+        return client.newCall(builder.method(methodName, requestBody).build());
+    }
+
+    private void closeEntity(ProtocolController.RequestInfo requestInfo) {
+        if (requestInfo.entity != null) {
+            try {
                 requestInfo.entity.close();
+            } catch (IOException ignored) {
             }
         }
     }
@@ -261,6 +276,7 @@ public class OkHttpTransportLayer extends HttpTransportLayer {
     @Override
     public Connection send(String requestName, ProtocolController protocolController, ProtocolController.RequestInfo requestInfo,
                            int timeout, TimeStat timeStat, int debugFlags, Method method) throws JudoException {
+        AdaptiveConcurrencyLimiter.Permit permit = null;
         try {
             OkHttpBuilder builder = new OkHttpBuilder();
             builder.url(requestInfo.url);
@@ -271,29 +287,71 @@ public class OkHttpTransportLayer extends HttpTransportLayer {
 
             logRequestHeaders(requestName, debugFlags, builder);
 
-            Response response = sendRequest(client, builder, requestInfo, timeStat, method, debugFlags);
-
-            logResponseHeaders(requestName, debugFlags, response);
-
-            if (!response.isSuccessful() && response.code() != 0) {
-                int code = response.code();
-                String message = response.message();
-                String body = "";
+            if (concurrencyLimiter != null) {
                 try {
-                    body = response.body().string();
-                } catch (IOException ignored) {
+                    permit = concurrencyLimiter.acquire(requestInfo.url, client.readTimeoutMillis());
+                } catch (InterruptedException e) {
+                    throw new CancelException();
+                } catch (TimeoutException e) {
+                    throw new ConnectionException(e);
                 }
-                handleHttpException(protocolController, code, message, body);
             }
 
-            if ((debugFlags & Endpoint.RESPONSE_DEBUG) > 0) {
-                longLog("Response code(" + requestName + ")", response.code() + "", JudoLogger.LogLevel.DEBUG);
-                longLog("Response protocol(" + requestName + ")", response.protocol().toString(), JudoLogger.LogLevel.DEBUG);
+            Response response = sendRequest(client, builder, requestInfo, timeStat, method, debugFlags);
+
+            Connection connection = createConnection(requestName, protocolController, response, debugFlags, permit);
+            permit = null;
+            return connection;
+        } catch (Exception ex) {
+            releasePermit(permit, ex);
+            if (!(ex instanceof JudoException)) {
+                throw new ConnectionException(ex);
+            } else {
+                throw (JudoException) ex;
             }
-            return new OkConnection(response);
+        }
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public AsyncCall sendAsync(final String requestName, final ProtocolController protocolController, final ProtocolController.RequestInfo requestInfo,
+                               int timeout, final TimeStat timeStat, final int debugFlags, Method method, final ConnectionListener listener) throws JudoException {
+        try {
+            OkHttpBuilder builder = new OkHttpBuilder();
+            builder.url(requestInfo.url);
+            OkHttpClient client = initSetup(baseClient.newBuilder(), builder, requestInfo, timeout, timeStat);
 
+            logRequestHeaders(requestName, debugFlags, builder);
 
+            final Call call = createCall(client, builder, requestInfo, timeStat, method, debugFlags);
+            if (concurrencyLimiter == null) {
+                enqueue(call, null, requestName, protocolController, requestInfo, timeStat, debugFlags, listener);
+            } else {
+                concurrencyLimiter.acquireAsync(requestInfo.url, new AdaptiveConcurrencyLimiter.PermitListener() {
+                    @Override
+                    public void onPermit(AdaptiveConcurrencyLimiter.Permit permit) {
+                        if (call.isCanceled()) {
+                            permit.cancel();
+                            closeEntity(requestInfo);
+                            listener.onError(new CancelException());
+                        } else {
+                            enqueue(call, permit, requestName, protocolController, requestInfo, timeStat, debugFlags, listener);
+                        }
+                    }
+                });
+            }
+            return new AsyncCall() {
+                @Override
+                public void cancel() {
+                    call.cancel();
+                }
+            };
         } catch (Exception ex) {
+            closeEntity(requestInfo);
             if (!(ex instanceof JudoException)) {
                 throw new ConnectionException(ex);
             } else {
@@ -302,6 +360,72 @@ public class OkHttpTransportLayer extends HttpTransportLayer {
         }
     }
 
+    private void enqueue(Call call, final AdaptiveConcurrencyLimiter.Permit permit, final String requestName, final ProtocolController protocolController,
+                         final ProtocolController.RequestInfo requestInfo, final TimeStat timeStat, final int debugFlags, final ConnectionListener listener) {
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                closeEntity(requestInfo);
+                JudoException ex = call.isCanceled() ? new CancelException() : new ConnectionException(e);
+                releasePermit(permit, ex);
+                listener.onError(ex);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                closeEntity(requestInfo);
+                timeStat.tickConnectionTime();
+                if (call.request().body() != null) {
+                    timeStat.tickSendTime();
+                }
+                try {
+                    listener.onConnection(createConnection(requestName, protocolController, response, debugFlags, permit));
+                } catch (JudoException e) {
+                    response.close();
+                    releasePermit(permit, e);
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    private void releasePermit(AdaptiveConcurrencyLimiter.Permit permit, Exception ex) {
+        if (permit != null) {
+            if (ex instanceof CancelException) {
+                permit.cancel();
+            } else if (ex instanceof HttpException) {
+                permit.release(((HttpException) ex).getCode() < 500);
+            } else {
+                permit.release(false);
+            }
+        }
+    }
+
+    protected Connection createConnection(String requestName, ProtocolController protocolController, Response response, int debugFlags,
+                                          AdaptiveConcurrencyLimiter.Permit permit) throws JudoException {
+        if (permit != null) {
+            permit.onResponse();
+        }
+        logResponseHeaders(requestName, debugFlags, response);
+
+        if (!response.isSuccessful() && response.code() != 0) {
+            int code = response.code();
+            String message = response.message();
+            String body = "";
+            try {
+                body = response.body().string();
+            } catch (IOException ignored) {
+            }
+            handleHttpException(protocolController, code, message, body, response.headers().toMultimap());
+        }
+
+        if ((debugFlags & Endpoint.RESPONSE_DEBUG) > 0) {
+            longLog("Response code(" + requestName + ")", response.code() + "", JudoLogger.LogLevel.DEBUG);
+            longLog("Response protocol(" + requestName + ")", response.protocol().toString(), JudoLogger.LogLevel.DEBUG);
+        }
+        return new OkConnection(response, permit);
+    }
+
     protected void logResponseHeaders(String requestName, int debugFlags, Response response) {
         if ((debugFlags & Endpoint.HEADERS_DEBUG) > 0) {
             String headers = "";
@@ -363,13 +487,46 @@ public class OkHttpTransportLayer extends HttpTransportLayer {
 
         protected Response response;
 
+        protected AdaptiveConcurrencyLimiter.Permit permit;
+
+        protected volatile boolean readFailed;
+
         public OkConnection(Response response) {
             this.response = response;
         }
 
+        public OkConnection(Response response, AdaptiveConcurrencyLimiter.Permit permit) {
+            this.response = response;
+            this.permit = permit;
+        }
+
         @Override
         public InputStream getStream() throws ConnectionException {
-            return response.body().byteStream();
+            if (permit == null) {
+                return response.body().byteStream();
+            }
+            // body read failures count as failed requests for the concurrency limiter
+            return new FilterInputStream(response.body().byteStream()) {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        return super.read();
+                    } catch (IOException e) {
+                        readFailed = true;
+                        throw e;
+                    }
+                }
+
+                @Override
+                public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+                    try {
+                        return super.read(buffer, offset, count);
+                    } catch (IOException e) {
+                        readFailed = true;
+                        throw e;
+                    }
+                }
+            };
         }
 
         @Override
@@ -405,6 +562,9 @@ public class OkHttpTransportLayer extends HttpTransportLayer {
         @Override
         public void close() {
             response.close();
+            if (permit != null) {
+                permit.release(!readFailed);
+            }
         }
     }
 
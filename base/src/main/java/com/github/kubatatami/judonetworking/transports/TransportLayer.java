@@ -19,6 +19,8 @@ import java.util.Map;
  */
 public abstract class TransportLayer {
 
+    protected AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     public abstract Connection send(String requestName, ProtocolController protocolController, ProtocolController.RequestInfo requestInfo,
                                     int timeout, TimeStat timeStat, int debugFlags, Method method) throws JudoException;
 
@@ -30,6 +32,57 @@ public abstract class TransportLayer {
 
     public abstract int getMethodTimeout();
 
+    /**
+     * Enables adaptive limit of requests in flight per host. The limit grows while latency is stable
+     * and drops when latency grows or requests fail.
+     *
+     * @param initialLimit Limit of a new host
+     * @param minLimit     Lowest limit
+     * @param maxLimit     Highest limit
+     */
+    public void setAdaptiveConcurrency(int initialLimit, int minLimit, int maxLimit) {
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+    }
+
+    /**
+     * @return Limiter with current limits and latencies per host or null if adaptive concurrency is disabled
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @return True if transport implements sendAsync.
+     */
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    /**
+     * Sends request without blocking current thread. Result is passed to the listener on a transport thread.
+     *
+     * @return Handle which cancels the network call
+     */
+    public AsyncCall sendAsync(String requestName, ProtocolController protocolController, ProtocolController.RequestInfo requestInfo,
+                               int timeout, TimeStat timeStat, int debugFlags, Method method, ConnectionListener listener) throws JudoException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support async requests.");
+    }
+
+    public interface AsyncCall {
+
+        /**
+         * Called on a background thread, may block briefly.
+         */
+        void cancel();
+    }
+
+    public interface ConnectionListener {
+
+        void onConnection(Connection connection);
+
+        void onError(JudoException e);
+    }
+
 
     public interface Connection {
 
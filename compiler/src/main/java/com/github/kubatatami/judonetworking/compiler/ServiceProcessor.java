@@ -0,0 +1,323 @@
+package com.github.kubatatami.judonetworking.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code <ApiInterface>$$JudoService} class for every API interface with
+ * {@code @RequestMethod} methods, so the endpoint does not have to build a dynamic proxy.
+ * Generated methods still pass {@link java.lang.reflect.Method} objects, resolved by name, to the invocation handler,
+ * because request metadata is read from method annotations.
+ */
+public class ServiceProcessor extends AbstractProcessor {
+
+    public static final String REQUEST_METHOD = "com.github.kubatatami.judonetworking.annotations.RequestMethod";
+
+    public static final String SUFFIX = "$$JudoService";
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(REQUEST_METHOD);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement requestMethod = processingEnv.getElementUtils().getTypeElement(REQUEST_METHOD);
+        if (requestMethod == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            processElement(element, requestMethod);
+        }
+        return false;
+    }
+
+    private void processElement(Element element, TypeElement requestMethod) {
+        if (element.getKind() == ElementKind.INTERFACE && isService((TypeElement) element, requestMethod)) {
+            generateService((TypeElement) element);
+        }
+        for (TypeElement nested : ElementFilter.typesIn(element.getEnclosedElements())) {
+            processElement(nested, requestMethod);
+        }
+    }
+
+    private boolean isService(TypeElement type, TypeElement requestMethod) {
+        if (!type.getTypeParameters().isEmpty() || !isAccessible(type)) {
+            return false;
+        }
+        for (ExecutableElement method : getServiceMethods(type)) {
+            for (javax.lang.model.element.AnnotationMirror annotation : method.getAnnotationMirrors()) {
+                if (annotation.getAnnotationType().asElement().equals(requestMethod)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAccessible(Element element) {
+        for (Element current = element; current != null && current.getKind() != ElementKind.PACKAGE;
+             current = current.getEnclosingElement()) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<ExecutableElement> getServiceMethods(TypeElement type) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        List<ExecutableElement> result = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)
+                    || method.getEnclosingElement().toString().equals(Object.class.getName())) {
+                continue;
+            }
+            StringBuilder signature = new StringBuilder(method.getSimpleName());
+            for (VariableElement parameter : method.getParameters()) {
+                signature.append(',').append(types.erasure(parameter.asType()));
+            }
+            if (signatures.add(signature.toString())) {
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    private void generateService(TypeElement type) {
+        Elements elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String className = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        if (!generated.add(qualifiedName)) {
+            return;
+        }
+        List<ExecutableElement> methods = getServiceMethods(type);
+        try {
+            Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+            try {
+                writer.write(new ServiceWriter(processingEnv.getTypeUtils(), type, packageName, className, methods).write());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Can't generate " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    static class ServiceWriter {
+
+        private final Types types;
+
+        private final TypeElement type;
+
+        private final String packageName;
+
+        private final String className;
+
+        private final List<ExecutableElement> methods;
+
+        private final StringBuilder sb = new StringBuilder();
+
+        ServiceWriter(Types types, TypeElement type, String packageName, String className, List<ExecutableElement> methods) {
+            this.types = types;
+            this.type = type;
+            this.packageName = packageName;
+            this.className = className;
+            this.methods = methods;
+        }
+
+        String write() {
+            String interfaceName = type.getQualifiedName().toString();
+            if (!packageName.isEmpty()) {
+                sb.append("package ").append(packageName).append(";\n\n");
+            }
+            sb.append("// Generated by JudoNetworking. Do not modify.\n");
+            sb.append("@SuppressWarnings(\"unchecked\")\n");
+            sb.append("public final class ").append(className).append(" implements ").append(interfaceName).append(" {\n\n");
+            sb.append("    private static volatile java.lang.reflect.Method[] methods;\n\n");
+            sb.append("    private final java.lang.reflect.InvocationHandler handler;\n\n");
+            sb.append("    public ").append(className).append("(java.lang.reflect.InvocationHandler handler) {\n");
+            sb.append("        this.handler = handler;\n");
+            sb.append("    }\n");
+            for (int i = 0; i < methods.size(); i++) {
+                writeMethod(methods.get(i), i);
+            }
+            writeMethodsLookup(interfaceName);
+            sb.append("}\n");
+            return sb.toString();
+        }
+
+        private void writeMethod(ExecutableElement method, int index) {
+            sb.append("\n    @Override\n    public ");
+            writeTypeParameters(method);
+            TypeMirror returnType = method.getReturnType();
+            sb.append(returnType).append(' ').append(method.getSimpleName()).append('(');
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                VariableElement parameter = parameters.get(i);
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                if (method.isVarArgs() && i == parameters.size() - 1) {
+                    String arrayType = parameter.asType().toString();
+                    sb.append(arrayType.substring(0, arrayType.length() - 2)).append("...");
+                } else {
+                    sb.append(parameter.asType());
+                }
+                sb.append(' ').append(parameter.getSimpleName());
+            }
+            sb.append(')');
+            List<TypeMirror> thrownTypes = getCheckedThrownTypes(method);
+            for (int i = 0; i < thrownTypes.size(); i++) {
+                sb.append(i == 0 ? " throws " : ", ").append(thrownTypes.get(i));
+            }
+            sb.append(" {\n        try {\n            ");
+            String call = "handler.invoke(this, methods()[" + index + "], " + createArgs(parameters) + ")";
+            if (returnType.getKind() == TypeKind.VOID) {
+                sb.append(call).append(";\n");
+            } else if (returnType.getKind().isPrimitive()) {
+                sb.append("return (").append(types.boxedClass((javax.lang.model.type.PrimitiveType) returnType).getQualifiedName())
+                        .append(") ").append(call).append(";\n");
+            } else {
+                sb.append("return (").append(returnType).append(") ").append(call).append(";\n");
+            }
+            sb.append("        } catch (java.lang.RuntimeException $e) {\n            throw $e;\n");
+            sb.append("        } catch (java.lang.Error $e) {\n            throw $e;\n");
+            boolean throwable = false;
+            for (TypeMirror thrownType : thrownTypes) {
+                throwable |= thrownType.toString().equals(Throwable.class.getName());
+                sb.append("        } catch (").append(thrownType).append(" $e) {\n            throw $e;\n");
+            }
+            if (!throwable) {
+                sb.append("        } catch (java.lang.Throwable $e) {\n");
+                sb.append("            throw new java.lang.reflect.UndeclaredThrowableException($e);\n");
+            }
+            sb.append("        }\n    }\n");
+        }
+
+        private void writeTypeParameters(ExecutableElement method) {
+            List<? extends TypeParameterElement> typeParameters = method.getTypeParameters();
+            if (typeParameters.isEmpty()) {
+                return;
+            }
+            sb.append('<');
+            for (int i = 0; i < typeParameters.size(); i++) {
+                TypeParameterElement typeParameter = typeParameters.get(i);
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(typeParameter.getSimpleName());
+                String separator = " extends ";
+                for (TypeMirror bound : typeParameter.getBounds()) {
+                    if (!bound.toString().equals(Object.class.getName())) {
+                        sb.append(separator).append(bound);
+                        separator = " & ";
+                    }
+                }
+            }
+            sb.append("> ");
+        }
+
+        private List<TypeMirror> getCheckedThrownTypes(ExecutableElement method) {
+            List<TypeMirror> result = new ArrayList<>();
+            for (TypeMirror thrownType : method.getThrownTypes()) {
+                if (isUnchecked(thrownType)) {
+                    continue;
+                }
+                boolean covered = false;
+                for (TypeMirror other : method.getThrownTypes()) {
+                    if (other != thrownType && !types.isSameType(other, thrownType) && types.isSubtype(thrownType, other)) {
+                        covered = true;
+                    }
+                }
+                if (!covered) {
+                    result.add(thrownType);
+                }
+            }
+            return result;
+        }
+
+        private boolean isUnchecked(TypeMirror thrownType) {
+            for (TypeMirror supertype = thrownType; supertype.getKind() == TypeKind.DECLARED; ) {
+                String name = types.erasure(supertype).toString();
+                if (name.equals(RuntimeException.class.getName()) || name.equals(Error.class.getName())) {
+                    return true;
+                }
+                List<? extends TypeMirror> supertypes = types.directSupertypes(supertype);
+                if (supertypes.isEmpty()) {
+                    break;
+                }
+                supertype = supertypes.get(0);
+            }
+            return false;
+        }
+
+        private String createArgs(List<? extends VariableElement> parameters) {
+            if (parameters.isEmpty()) {
+                return "null";
+            }
+            StringBuilder args = new StringBuilder("new java.lang.Object[]{");
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) {
+                    args.append(", ");
+                }
+                args.append(parameters.get(i).getSimpleName());
+            }
+            return args.append('}').toString();
+        }
+
+        private void writeMethodsLookup(String interfaceName) {
+            sb.append("\n    private static java.lang.reflect.Method[] methods() {\n");
+            sb.append("        java.lang.reflect.Method[] result = methods;\n");
+            sb.append("        if (result == null) {\n            try {\n");
+            sb.append("                result = new java.lang.reflect.Method[]{\n");
+            for (int i = 0; i < methods.size(); i++) {
+                ExecutableElement method = methods.get(i);
+                sb.append("                        ").append(interfaceName).append(".class.getMethod(\"")
+                        .append(method.getSimpleName()).append('"');
+                for (VariableElement parameter : method.getParameters()) {
+                    sb.append(", ").append(types.erasure(parameter.asType())).append(".class");
+                }
+                sb.append(i < methods.size() - 1 ? "),\n" : ")\n");
+            }
+            sb.append("                };\n");
+            sb.append("            } catch (java.lang.NoSuchMethodException e) {\n");
+            sb.append("                throw new java.lang.IllegalStateException(e);\n");
+            sb.append("            }\n            methods = result;\n        }\n        return result;\n    }\n");
+        }
+    }
+}
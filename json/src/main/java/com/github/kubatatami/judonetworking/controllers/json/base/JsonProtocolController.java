@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.kubatatami.judonetworking.caches.CacheCodec;
 import com.github.kubatatami.judonetworking.controllers.ProtocolController;
 import com.github.kubatatami.judonetworking.controllers.json.module.BooleanModule;
 import com.github.kubatatami.judonetworking.controllers.json.module.EnumAnnotationModule;
@@ -69,4 +70,9 @@ public abstract class JsonProtocolController extends ProtocolController {
         return mapper;
     }
 
+    @Override
+    public CacheCodec getCacheCodec() {
+        return new SmileCacheCodec(this);
+    }
+
 }
@@ -0,0 +1,62 @@
+package com.github.kubatatami.judonetworking.controllers.json.base;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.kubatatami.judonetworking.caches.CacheCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Codec which stores cached models in binary Smile format. Objects are mapped by mapper of the controller,
+ * so its configuration and registered modules apply as for json responses.
+ */
+public class SmileCacheCodec implements CacheCodec {
+
+    public static final byte ID = 2;
+
+    private static final SmileFactory factory = new SmileFactory();
+
+    private final JsonProtocolController controller;
+
+    public SmileCacheCodec(JsonProtocolController controller) {
+        this.controller = controller;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public void encode(Object object, Type type, OutputStream stream) throws IOException {
+        if (type == null) {
+            throw new IOException("Unknown type of cached object.");
+        }
+        ObjectMapper mapper = controller.getMapper();
+        JsonGenerator generator = factory.createGenerator(stream);
+        try {
+            mapper.writerFor(mapper.getTypeFactory().constructType(type)).writeValue(generator, object);
+        } finally {
+            generator.close();
+        }
+    }
+
+    @Override
+    public Object decode(InputStream stream, Type type) throws IOException {
+        if (type == null) {
+            throw new IOException("Unknown type of cached object.");
+        }
+        ObjectMapper mapper = controller.getMapper();
+        JsonParser parser = factory.createParser(stream);
+        try {
+            return mapper.readerFor(mapper.getTypeFactory().constructType(type)).readValue(parser);
+        } finally {
+            parser.close();
+        }
+    }
+}
@@ -161,7 +161,7 @@ public class DataLayerHttpTransportLayer extends HttpTransportLayer {
                 int code = response.getCode();
                 String message = response.getMessage();
                 String body = new String(response.getBody());
-                handleHttpException(protocolController, code, message, body);
+                handleHttpException(protocolController, code, message, body, response.getHeaders());
             }
 
             if ((debugFlags & Endpoint.RESPONSE_DEBUG) > 0) {